@@ -1,21 +1,37 @@
 package com.mp3player;
 
+import java.io.IOException;
+
+import com.mp3player.presentation.view.MainController;
+
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 public class Main extends Application {
+    private final StartupTimer startupTimer = new StartupTimer();
+    private MainController controller;
 
     @Override
-    public void start(Stage primaryStage) throws Exception {
-        FXMLLoader loader = new FXMLLoader(
-            getClass().getResource("/com/mp3player/presentation/view/main-view.fxml")
-        );
-        Parent root = loader.load();
+    public void start(Stage primaryStage) {
+        startupTimer.mark("toolkit started");
+
+        // Show a lightweight placeholder first, the full view is built after the first frame
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setMaxSize(48, 48);
+        VBox placeholder = new VBox(12, progress, new Label("Loading…"));
+        placeholder.setAlignment(Pos.CENTER);
+        StackPane skeleton = new StackPane(placeholder);
 
-        Scene scene = new Scene(root);
+        Scene scene = new Scene(skeleton, 950, 750);
         scene.getStylesheets().add(
             getClass().getResource("/com/mp3player/presentation/view/style.css").toExternalForm()
         );
@@ -24,6 +40,44 @@ public class Main extends Application {
         primaryStage.setMinWidth(800);
         primaryStage.setMinHeight(600);
         primaryStage.show();
+        startupTimer.mark("stage shown");
+
+        Runnable firstFrame = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                startupTimer.mark("first frame (skeleton)");
+                Platform.runLater(() -> showMainView(scene));
+            }
+        };
+        scene.addPostLayoutPulseListener(firstFrame);
+    }
+
+    private void showMainView(Scene scene) {
+        FXMLLoader loader = new FXMLLoader(
+            getClass().getResource("/com/mp3player/presentation/view/main-view.fxml")
+        );
+        Parent root;
+        try {
+            root = loader.load();
+        } catch (IOException e) {
+            System.err.println("Error loading main view: " + e.getMessage());
+            e.printStackTrace();
+            Platform.exit();
+            return;
+        }
+        scene.setRoot(root);
+        controller = loader.getController();
+        startupTimer.mark("main view built");
+
+        controller.restoreState(startupTimer);
+    }
+
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
     }
 
     public static void main(String[] args) {
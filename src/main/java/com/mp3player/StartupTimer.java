@@ -0,0 +1,30 @@
+package com.mp3player;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Logs how long each startup phase took, measured from JVM process start
+ * when the platform reports it and from the first mark otherwise.
+ */
+public class StartupTimer {
+    private final long startNanos;
+    private long lastNanos;
+
+    public StartupTimer() {
+        long now = System.nanoTime();
+        long sinceProcessStart = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toNanos())
+                .filter(nanos -> nanos >= 0)
+                .orElse(0L);
+        this.startNanos = now - sinceProcessStart;
+        this.lastNanos = now;
+    }
+
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        System.out.printf("[startup] %-32s %6d ms (+%d ms)%n", phase,
+                (now - startNanos) / 1_000_000, (now - lastNanos) / 1_000_000);
+        lastNanos = now;
+    }
+}
@@ -0,0 +1,17 @@
+package com.mp3player.data.audio;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Turns an audio file into a stream of signed 16-bit little-endian PCM.
+ * Additional decoders can be registered with {@link AudioDecoderRegistry}
+ * or provided as a service implementation of this interface.
+ */
+public interface AudioDecoder {
+    boolean canDecode(Path file);
+
+    AudioInputStream open(Path file) throws IOException, UnsupportedAudioFileException;
+}
@@ -0,0 +1,41 @@
+package com.mp3player.data.audio;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Ordered list of decoders. The first decoder that accepts a file is used,
+ * so decoders registered later act as fallbacks.
+ */
+public class AudioDecoderRegistry {
+    private final List<AudioDecoder> decoders = new CopyOnWriteArrayList<>();
+
+    public static AudioDecoderRegistry createDefault() {
+        AudioDecoderRegistry registry = new AudioDecoderRegistry();
+        // Plugged-in decoders (e.g. a native MP3 decoder) take precedence
+        for (AudioDecoder decoder : ServiceLoader.load(AudioDecoder.class)) {
+            registry.register(decoder);
+        }
+        registry.register(new JavaSoundDecoder("wav", "aiff", "aif", "au"));
+        registry.register(new JavaSoundDecoder("mp3"));
+        return registry;
+    }
+
+    public void register(AudioDecoder decoder) {
+        decoders.add(decoder);
+    }
+
+    public AudioInputStream open(Path file) throws IOException, UnsupportedAudioFileException {
+        for (AudioDecoder decoder : decoders) {
+            if (decoder.canDecode(file)) {
+                return decoder.open(file);
+            }
+        }
+        throw new UnsupportedAudioFileException("No decoder for " + file.getFileName());
+    }
+}
@@ -0,0 +1,161 @@
+package com.mp3player.data.audio;
+
+import java.util.Arrays;
+
+/**
+ * Ten band graphic equalizer built from a cascade of peaking biquad filters.
+ * Coefficients are recomputed only when a gain or the sample rate changes and
+ * are published as one immutable set, so the audio thread picks up a new
+ * preset between blocks without locking. Filter state is kept across the
+ * swap, which avoids clicks when gains change mid-stream.
+ */
+public class BiquadEqualizer {
+    public static final double[] BAND_FREQUENCIES = {32, 64, 125, 250, 500, 1000, 2000, 4000, 8000, 16000};
+    private static final double BAND_Q = 1.41; // roughly one octave wide
+
+    private final double[] gains = new double[BAND_FREQUENCIES.length];
+    private boolean enabled;
+    private float sampleRate = 44100f;
+
+    private volatile Coefficients coefficients;
+
+    // Transposed direct form II state, indexed [band * channels + channel]
+    private double[] z1 = new double[0];
+    private double[] z2 = new double[0];
+    private int channels;
+    private Coefficients lastApplied;
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        publish();
+    }
+
+    public synchronized void setBandGain(int bandIndex, double gainDb) {
+        if (bandIndex >= 0 && bandIndex < gains.length) {
+            gains[bandIndex] = gainDb;
+            publish();
+        }
+    }
+
+    public synchronized void setAllBandGains(double[] gainsDb) {
+        if (gainsDb != null && gainsDb.length == gains.length) {
+            System.arraycopy(gainsDb, 0, gains, 0, gains.length);
+            publish();
+        }
+    }
+
+    /**
+     * Prepares the filters for a stream format. Called when playback of a
+     * stream starts, not from the audio loop.
+     */
+    public synchronized void configure(float sampleRate, int channels) {
+        if (channels != this.channels) {
+            this.channels = channels;
+            z1 = new double[BAND_FREQUENCIES.length * channels];
+            z2 = new double[BAND_FREQUENCIES.length * channels];
+        }
+        if (sampleRate != this.sampleRate) {
+            this.sampleRate = sampleRate;
+            publish();
+        }
+    }
+
+    public boolean isActive() {
+        return coefficients != null;
+    }
+
+    /**
+     * Filters interleaved float samples in place. Must be called from a single thread.
+     */
+    public void process(float[] samples, int frames) {
+        Coefficients current = coefficients;
+        if (current == null) {
+            lastApplied = null;
+            return;
+        }
+        if (lastApplied == null) {
+            // Re-enabled: start from silence rather than stale state
+            Arrays.fill(z1, 0);
+            Arrays.fill(z2, 0);
+        }
+        lastApplied = current;
+
+        int channelCount = channels;
+        int bands = current.b0.length;
+        for (int band = 0; band < bands; band++) {
+            boolean identity = current.identity[band];
+            double b0 = current.b0[band];
+            double b1 = current.b1[band];
+            double b2 = current.b2[band];
+            double a1 = current.a1[band];
+            double a2 = current.a2[band];
+
+            for (int channel = 0; channel < channelCount; channel++) {
+                int stateIndex = band * channelCount + channel;
+                double s1 = z1[stateIndex];
+                double s2 = z2[stateIndex];
+                if (identity && s1 == 0 && s2 == 0) {
+                    continue; // flat band with no ringing left over from a previous gain
+                }
+                for (int i = channel, end = frames * channelCount; i < end; i += channelCount) {
+                    double in = samples[i];
+                    double out = b0 * in + s1;
+                    s1 = b1 * in - a1 * out + s2;
+                    s2 = b2 * in - a2 * out;
+                    samples[i] = (float) out;
+                }
+                z1[stateIndex] = s1;
+                z2[stateIndex] = s2;
+            }
+        }
+    }
+
+    private void publish() {
+        coefficients = enabled ? Coefficients.compute(gains, sampleRate) : null;
+    }
+
+    private static final class Coefficients {
+        private final double[] b0;
+        private final double[] b1;
+        private final double[] b2;
+        private final double[] a1;
+        private final double[] a2;
+        private final boolean[] identity;
+
+        private Coefficients(int bands) {
+            b0 = new double[bands];
+            b1 = new double[bands];
+            b2 = new double[bands];
+            a1 = new double[bands];
+            a2 = new double[bands];
+            identity = new boolean[bands];
+        }
+
+        // Peaking EQ from the RBJ audio EQ cookbook, normalized by a0
+        static Coefficients compute(double[] gainsDb, float sampleRate) {
+            Coefficients c = new Coefficients(gainsDb.length);
+            for (int band = 0; band < gainsDb.length; band++) {
+                double frequency = BAND_FREQUENCIES[band];
+                // A flat band, or one above Nyquist, is an identity filter
+                if (gainsDb[band] == 0 || frequency >= sampleRate / 2.0) {
+                    c.b0[band] = 1;
+                    c.identity[band] = true;
+                    continue;
+                }
+
+                double a = Math.pow(10, gainsDb[band] / 40.0);
+                double omega = 2 * Math.PI * frequency / sampleRate;
+                double alpha = Math.sin(omega) / (2 * BAND_Q);
+                double cos = Math.cos(omega);
+                double a0 = 1 + alpha / a;
+
+                c.b0[band] = (1 + alpha * a) / a0;
+                c.b1[band] = -2 * cos / a0;
+                c.b2[band] = (1 - alpha * a) / a0;
+                c.a1[band] = -2 * cos / a0;
+                c.a2[band] = (1 - alpha / a) / a0;
+            }
+            return c;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.mp3player.data.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decodes through the Java Sound readers installed in the runtime. WAV, AIFF
+ * and AU work out of the box; MP3 works once a Java Sound MP3 provider is on
+ * the module or class path.
+ */
+public class JavaSoundDecoder implements AudioDecoder {
+    private final Set<String> extensions;
+
+    public JavaSoundDecoder(String... extensions) {
+        this.extensions = Set.of(extensions);
+    }
+
+    @Override
+    public boolean canDecode(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && extensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public AudioInputStream open(Path file) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream source = AudioSystem.getAudioInputStream(file.toFile());
+        AudioFormat sourceFormat = source.getFormat();
+        AudioFormat pcmFormat = new AudioFormat(
+                AudioFormat.Encoding.PCM_SIGNED,
+                sourceFormat.getSampleRate(),
+                16,
+                sourceFormat.getChannels(),
+                sourceFormat.getChannels() * 2,
+                sourceFormat.getSampleRate(),
+                false);
+
+        if (sourceFormat.matches(pcmFormat)) {
+            return source;
+        }
+        try {
+            return AudioSystem.getAudioInputStream(pcmFormat, source);
+        } catch (IllegalArgumentException e) {
+            source.close();
+            throw new UnsupportedAudioFileException("No PCM conversion for " + sourceFormat);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.mp3player.data.audio;
+
+import com.mp3player.domain.entity.Loudness;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Loudness of a track following ITU-R BS.1770-4 / EBU R128: K-weighted mean
+ * square over 400 ms blocks with 75% overlap, gated at -70 LUFS and then 10 LU
+ * below the ungated level, plus the true peak from 4x oversampling. Reads
+ * signed 16-bit little-endian PCM as produced by the {@link AudioDecoder}s.
+ */
+public class LoudnessMeter {
+    private static final double ABSOLUTE_GATE_LUFS = -70.0;
+    private static final double RELATIVE_GATE_LU = -10.0;
+    private static final int OVERSAMPLING = 4;
+    private static final int TAPS_PER_PHASE = 12;
+    private static final int READ_FRAMES = 4096;
+
+    // Interpolation filter for the true peak, [phase][tap]; a windowed sinc
+    private static final double[][] PHASES = buildInterpolationFilter();
+    private static final double PHASE_GAIN_BOUND = maxAbsTapSum();
+
+    private final int channels;
+    private final double[] channelWeights;
+
+    // K-weighting: high shelf followed by the RLB high-pass, per channel
+    private final double[] shelfB = new double[3];
+    private final double[] shelfA = new double[3];
+    private final double[] highPassB = {1.0, -2.0, 1.0};
+    private final double[] highPassA = new double[3];
+    private final double[] state; // [channel * 4 + i]
+
+    // 100 ms sub-blocks; a 400 ms block is the last four of them
+    private final int subBlockFrames;
+    private final double[] subBlockEnergy = new double[4];
+    private int subBlocksSeen;
+    private int framesInSubBlock;
+    private final double[] channelSquares;
+    private double[] blockEnergies = new double[1024];
+    private int blockCount;
+
+    // True peak: recent samples per channel, and how many more samples to oversample
+    private final boolean oversample;
+    private final double[] history;
+    private int historyPosition;
+    private int hotSamples;
+    private double peak;
+
+    public LoudnessMeter(float sampleRate, int channels) {
+        this.channels = channels;
+        this.channelWeights = new double[channels];
+        for (int c = 0; c < channels; c++) {
+            // 5.1 order L, R, C, LFE, Ls, Rs: LFE is ignored, surrounds weigh +1.5 dB
+            channelWeights[c] = channels > 3 && c == 3 ? 0.0 : channels > 3 && c >= 4 ? 1.41 : 1.0;
+        }
+        this.state = new double[channels * 4];
+        this.channelSquares = new double[channels];
+        this.subBlockFrames = Math.max(1, Math.round(sampleRate * 0.1f));
+        this.oversample = sampleRate < 96000;
+        this.history = new double[channels * TAPS_PER_PHASE];
+        computeFilters(sampleRate);
+    }
+
+    public static Loudness measure(AudioInputStream in) throws IOException {
+        AudioFormat format = in.getFormat();
+        LoudnessMeter meter = new LoudnessMeter(format.getSampleRate(), format.getChannels());
+        byte[] buffer = new byte[format.getChannels() * 2 * READ_FRAMES];
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) > 0) {
+            meter.process(buffer, read);
+        }
+        return meter.result();
+    }
+
+    private void computeFilters(double sampleRate) {
+        // Coefficients for any sample rate, matching the 48 kHz ones in BS.1770
+        double f0 = 1681.974450955533;
+        double gainDb = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10.0, gainDb / 20.0);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1.0 + k / q + k * k;
+        shelfB[0] = (vh + vb * k / q + k * k) / a0;
+        shelfB[1] = 2.0 * (k * k - vh) / a0;
+        shelfB[2] = (vh - vb * k / q + k * k) / a0;
+        shelfA[0] = 1.0;
+        shelfA[1] = 2.0 * (k * k - 1.0) / a0;
+        shelfA[2] = (1.0 - k / q + k * k) / a0;
+
+        f0 = 38.13547087602444;
+        q = 0.5003270373238773;
+        k = Math.tan(Math.PI * f0 / sampleRate);
+        a0 = 1.0 + k / q + k * k;
+        highPassA[0] = 1.0;
+        highPassA[1] = 2.0 * (k * k - 1.0) / a0;
+        highPassA[2] = (1.0 - k / q + k * k) / a0;
+    }
+
+    public void process(byte[] pcm, int length) {
+        int frameSize = channels * 2;
+        for (int frame = 0; frame + frameSize <= length; frame += frameSize) {
+            for (int c = 0; c < channels; c++) {
+                int i = frame + 2 * c;
+                double x = ((pcm[i + 1] << 8) | (pcm[i] & 0xff)) / 32768.0;
+                trackPeak(c, x);
+
+                // Two biquads in direct form II
+                int s = c * 4;
+                double w = x - shelfA[1] * state[s] - shelfA[2] * state[s + 1];
+                double y = shelfB[0] * w + shelfB[1] * state[s] + shelfB[2] * state[s + 1];
+                state[s + 1] = state[s];
+                state[s] = w;
+                w = y - highPassA[1] * state[s + 2] - highPassA[2] * state[s + 3];
+                y = highPassB[0] * w + highPassB[1] * state[s + 2] + highPassB[2] * state[s + 3];
+                state[s + 3] = state[s + 2];
+                state[s + 2] = w;
+
+                channelSquares[c] += y * y;
+            }
+            historyPosition = (historyPosition + 1) % TAPS_PER_PHASE;
+            if (hotSamples > 0) {
+                hotSamples--;
+            }
+
+            if (++framesInSubBlock == subBlockFrames) {
+                finishSubBlock();
+            }
+        }
+    }
+
+    private void trackPeak(int channel, double x) {
+        double magnitude = Math.abs(x);
+        if (magnitude > peak) {
+            peak = magnitude;
+        }
+        if (!oversample) {
+            return;
+        }
+        history[channel * TAPS_PER_PHASE + historyPosition] = x;
+        // Interpolated values can only beat the peak near samples that come close to it
+        if (magnitude * PHASE_GAIN_BOUND > peak) {
+            hotSamples = TAPS_PER_PHASE;
+        }
+        if (hotSamples > 0) {
+            int base = channel * TAPS_PER_PHASE;
+            for (double[] phase : PHASES) {
+                double sum = 0;
+                for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                    int index = historyPosition - tap;
+                    if (index < 0) {
+                        index += TAPS_PER_PHASE;
+                    }
+                    sum += phase[tap] * history[base + index];
+                }
+                double interpolated = Math.abs(sum);
+                if (interpolated > peak) {
+                    peak = interpolated;
+                }
+            }
+        }
+    }
+
+    private void finishSubBlock() {
+        double energy = 0;
+        for (int c = 0; c < channels; c++) {
+            energy += channelWeights[c] * channelSquares[c];
+            channelSquares[c] = 0;
+        }
+        subBlockEnergy[subBlocksSeen % 4] = energy;
+        subBlocksSeen++;
+        framesInSubBlock = 0;
+
+        if (subBlocksSeen >= 4) {
+            double blockEnergy = (subBlockEnergy[0] + subBlockEnergy[1] + subBlockEnergy[2] + subBlockEnergy[3])
+                    / (4.0 * subBlockFrames);
+            if (blockCount == blockEnergies.length) {
+                blockEnergies = Arrays.copyOf(blockEnergies, blockCount * 2);
+            }
+            blockEnergies[blockCount++] = blockEnergy;
+        }
+    }
+
+    public Loudness result() {
+        double absoluteGate = energyOf(ABSOLUTE_GATE_LUFS);
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < blockCount; i++) {
+            if (blockEnergies[i] > absoluteGate) {
+                sum += blockEnergies[i];
+                count++;
+            }
+        }
+        double truePeakDb = peak > 0 ? 20.0 * Math.log10(peak) : Double.NEGATIVE_INFINITY;
+        if (count == 0) {
+            return new Loudness(Double.NEGATIVE_INFINITY, truePeakDb, 0);
+        }
+
+        double gate = Math.max(absoluteGate, energyOf(loudnessOf(sum / count) + RELATIVE_GATE_LU));
+        sum = 0;
+        count = 0;
+        for (int i = 0; i < blockCount; i++) {
+            if (blockEnergies[i] > gate) {
+                sum += blockEnergies[i];
+                count++;
+            }
+        }
+        return new Loudness(loudnessOf(sum / count), truePeakDb, count);
+    }
+
+    private static double loudnessOf(double energy) {
+        return -0.691 + 10.0 * Math.log10(energy);
+    }
+
+    private static double energyOf(double loudness) {
+        return Math.pow(10.0, (loudness + 0.691) / 10.0);
+    }
+
+    private static double[][] buildInterpolationFilter() {
+        int length = OVERSAMPLING * TAPS_PER_PHASE;
+        double center = (length - 1) / 2.0;
+        double[][] phases = new double[OVERSAMPLING][TAPS_PER_PHASE];
+        for (int phase = 0; phase < OVERSAMPLING; phase++) {
+            double sum = 0;
+            for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                int n = tap * OVERSAMPLING + phase;
+                double t = (n - center) / OVERSAMPLING;
+                double sinc = t == 0 ? 1.0 : Math.sin(Math.PI * t) / (Math.PI * t);
+                double window = 0.5 - 0.5 * Math.cos(2 * Math.PI * (n + 0.5) / length);
+                phases[phase][tap] = sinc * window;
+                sum += phases[phase][tap];
+            }
+            // Unity gain at DC for every phase
+            for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                phases[phase][tap] /= sum;
+            }
+        }
+        return phases;
+    }
+
+    private static double maxAbsTapSum() {
+        double bound = 0;
+        for (double[] phase : PHASES) {
+            double sum = 0;
+            for (double tap : phase) {
+                sum += Math.abs(tap);
+            }
+            bound = Math.max(bound, sum);
+        }
+        return bound;
+    }
+}
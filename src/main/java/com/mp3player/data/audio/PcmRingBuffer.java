@@ -0,0 +1,76 @@
+package com.mp3player.data.audio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer/single-consumer ring of preallocated PCM blocks.
+ * The decoder thread claims a free block, fills it and publishes it; the
+ * output thread takes the oldest published block and releases it when done.
+ * No locks and no allocation after construction.
+ */
+public class PcmRingBuffer {
+    private final ByteBuffer[] blocks;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next block to publish
+    private final AtomicLong tail = new AtomicLong(); // next block to consume
+
+    public PcmRingBuffer(int blockCount, int blockSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, blockCount) - 1) << 1;
+        this.blocks = new ByteBuffer[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            blocks[i] = ByteBuffer.allocate(blockSize);
+        }
+    }
+
+    // Producer: returns an empty block to fill, or null when the ring is full
+    public ByteBuffer claim() {
+        long currentHead = head.get();
+        if (currentHead - tail.get() >= blocks.length) {
+            return null;
+        }
+        ByteBuffer block = blocks[(int) (currentHead & mask)];
+        block.clear();
+        return block;
+    }
+
+    // Producer: makes the claimed block visible to the consumer
+    public void publish() {
+        ByteBuffer block = blocks[(int) (head.get() & mask)];
+        block.flip();
+        head.lazySet(head.get() + 1);
+    }
+
+    // Consumer: returns the oldest published block, or null when the ring is empty
+    public ByteBuffer peek() {
+        long currentTail = tail.get();
+        if (currentTail >= head.get()) {
+            return null;
+        }
+        return blocks[(int) (currentTail & mask)];
+    }
+
+    // Consumer: hands the block returned by peek() back to the producer
+    public void release() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    public int available() {
+        return (int) (head.get() - tail.get());
+    }
+
+    public int capacity() {
+        return blocks.length;
+    }
+
+    public int blockSize() {
+        return blocks[0].capacity();
+    }
+
+    // Only safe while neither thread is running
+    public void reset() {
+        head.set(0);
+        tail.set(0);
+    }
+}
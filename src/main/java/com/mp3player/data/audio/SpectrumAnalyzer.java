@@ -0,0 +1,308 @@
+package com.mp3player.data.audio;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Spectrum of the audio being played, computed from the decoded PCM. The
+ * output thread feeds samples in; every update interval the latest window is
+ * Hann-weighted, run through a radix-2 real FFT and summed into bands spaced
+ * evenly on a log-frequency scale. Band levels (in dB, 0 = full scale) are
+ * published under a sequence lock: readers copy them without locking and
+ * retry if a publish overlapped the copy.
+ */
+public class SpectrumAnalyzer {
+    public static final int DEFAULT_FFT_SIZE = 2048;
+    public static final int DEFAULT_BAND_COUNT = 64;
+    public static final int DEFAULT_UPDATE_MILLIS = 16;
+
+    private static final float MIN_FREQUENCY = 20f;
+    private static final float FLOOR_DB = -100f;
+
+    private final int fftSize;
+    private final int half;
+    private final int updateMillis;
+
+    // Analysis state, touched only by the feeding thread
+    private final float[] history;
+    private int historyPosition;
+    private int samplesSinceUpdate;
+    private int hopSize;
+    private int channels = 2;
+    private float sampleRate = 44100f;
+    private final float[] window;
+    private final float powerScale;
+    private final float[] real;
+    private final float[] imag;
+    private final float[] cos;
+    private final float[] sin;
+    private final int[] bitReverse;
+    private final float[] power;
+
+    private volatile boolean enabled;
+    private volatile BandLayout layout;
+    // Odd while a publish is writing the levels
+    private volatile long sequence;
+
+    public SpectrumAnalyzer() {
+        this(DEFAULT_FFT_SIZE, DEFAULT_BAND_COUNT, DEFAULT_UPDATE_MILLIS);
+    }
+
+    public SpectrumAnalyzer(int fftSize, int bandCount, int updateMillis) {
+        if (Integer.bitCount(fftSize) != 1 || fftSize < 64) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 64: " + fftSize);
+        }
+        this.fftSize = fftSize;
+        this.half = fftSize / 2;
+        this.updateMillis = Math.max(1, updateMillis);
+
+        history = new float[fftSize];
+        real = new float[half];
+        imag = new float[half];
+        power = new float[half + 1];
+
+        window = new float[fftSize];
+        double sumOfSquares = 0;
+        for (int i = 0; i < fftSize; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (fftSize - 1)));
+            sumOfSquares += window[i] * window[i];
+        }
+        // A full scale sine summed over the bins it leaks into reads as 0 dB
+        powerScale = (float) (4.0 / (fftSize * sumOfSquares));
+
+        cos = new float[half + 1];
+        sin = new float[half + 1];
+        for (int k = 0; k <= half; k++) {
+            cos[k] = (float) Math.cos(2 * Math.PI * k / fftSize);
+            sin[k] = (float) Math.sin(2 * Math.PI * k / fftSize);
+        }
+
+        bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        layout = new BandLayout(Math.max(1, bandCount), fftSize, sampleRate);
+        hopSize = computeHopSize();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getBandCount() {
+        return layout.bandCount;
+    }
+
+    /**
+     * Changes the number of bands. Allocates a new layout, so call it when
+     * the display changes, not per frame.
+     */
+    public synchronized void setBandCount(int bandCount) {
+        if (bandCount != layout.bandCount && bandCount > 0) {
+            layout = new BandLayout(bandCount, fftSize, sampleRate);
+        }
+    }
+
+    /**
+     * Sets the format of the samples that will be fed in. Called when a
+     * stream starts, before any samples of it arrive.
+     */
+    public synchronized void configure(float sampleRate, int channels) {
+        this.channels = Math.max(1, channels);
+        if (sampleRate != this.sampleRate) {
+            this.sampleRate = sampleRate;
+            layout = new BandLayout(layout.bandCount, fftSize, sampleRate);
+        }
+        hopSize = computeHopSize();
+    }
+
+    /**
+     * Feeds interleaved float samples (16-bit scale).
+     */
+    public void accept(float[] samples, int sampleCount) {
+        if (!enabled) {
+            return;
+        }
+        int channelCount = channels;
+        for (int i = 0; i + channelCount <= sampleCount; i += channelCount) {
+            float mono = 0;
+            for (int c = 0; c < channelCount; c++) {
+                mono += samples[i + c];
+            }
+            push(mono / (channelCount * 32768f));
+        }
+    }
+
+    /**
+     * Feeds interleaved signed 16-bit little-endian samples.
+     */
+    public void accept(byte[] bytes, int length) {
+        if (!enabled) {
+            return;
+        }
+        int channelCount = channels;
+        int frameSize = channelCount * 2;
+        for (int i = 0; i + frameSize <= length; i += frameSize) {
+            int mono = 0;
+            for (int c = 0; c < frameSize; c += 2) {
+                mono += (short) ((bytes[i + c] & 0xFF) | (bytes[i + c + 1] << 8));
+            }
+            push(mono / (channelCount * 32768f));
+        }
+    }
+
+    /**
+     * Copies the latest band levels into the given array and returns the
+     * update sequence number, which only changes when new levels are published.
+     */
+    public long read(float[] levels) {
+        while (true) {
+            long before = sequence;
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            BandLayout current = layout;
+            int count = Math.min(levels.length, current.bandCount);
+            System.arraycopy(current.levels, 0, levels, 0, count);
+            // Keep the copy from being reordered past the re-check
+            VarHandle.acquireFence();
+            if (sequence == before && layout == current) {
+                return before;
+            }
+        }
+    }
+
+    private void push(float sample) {
+        history[historyPosition] = sample;
+        historyPosition = (historyPosition + 1) & (fftSize - 1);
+        if (++samplesSinceUpdate >= hopSize) {
+            samplesSinceUpdate = 0;
+            analyze();
+        }
+    }
+
+    private void analyze() {
+        // Pack the windowed real signal into a half-size complex sequence
+        for (int n = 0; n < half; n++) {
+            int even = (historyPosition + 2 * n) & (fftSize - 1);
+            int odd = (even + 1) & (fftSize - 1);
+            int target = bitReverse[n];
+            real[target] = history[even] * window[2 * n];
+            imag[target] = history[odd] * window[2 * n + 1];
+        }
+        fft();
+
+        // Split the half-size transform into the spectrum of the real signal
+        for (int k = 0; k <= half; k++) {
+            int a = k == half ? 0 : k;
+            int b = k == 0 ? 0 : half - k;
+            float ar = real[a];
+            float ai = imag[a];
+            float br = real[b];
+            float bi = imag[b];
+
+            float evenReal = (ar + br) * 0.5f;
+            float evenImag = (ai - bi) * 0.5f;
+            float oddReal = (ai + bi) * 0.5f;
+            float oddImag = (br - ar) * 0.5f;
+
+            float re = evenReal + cos[k] * oddReal + sin[k] * oddImag;
+            float im = evenImag + cos[k] * oddImag - sin[k] * oddReal;
+            power[k] = re * re + im * im;
+        }
+
+        publish();
+    }
+
+    // In-place iterative radix-2 FFT over real/imag, input already in bit-reversed order
+    private void fft() {
+        for (int size = 2; size <= half; size <<= 1) {
+            int halfSize = size >> 1;
+            int step = fftSize / size; // twiddle index stride in the full-size tables
+            for (int start = 0; start < half; start += size) {
+                for (int j = 0; j < halfSize; j++) {
+                    float wr = cos[j * step];
+                    float wi = -sin[j * step];
+                    int top = start + j;
+                    int bottom = top + halfSize;
+                    float tr = real[bottom] * wr - imag[bottom] * wi;
+                    float ti = real[bottom] * wi + imag[bottom] * wr;
+                    real[bottom] = real[top] - tr;
+                    imag[bottom] = imag[top] - ti;
+                    real[top] += tr;
+                    imag[top] += ti;
+                }
+            }
+        }
+    }
+
+    private void publish() {
+        BandLayout current = layout;
+        float[] pending = current.pending;
+        float scale = powerScale;
+        for (int band = 0; band < current.bandCount; band++) {
+            float sum = 0;
+            for (int bin = current.firstBin[band]; bin < current.endBin[band]; bin++) {
+                sum += power[bin];
+            }
+            float level = sum * scale;
+            pending[band] = level > 0 ? Math.max(FLOOR_DB, (float) (10 * Math.log10(level))) : FLOOR_DB;
+        }
+
+        // Levels are computed first so readers only wait for the copy
+        long start = sequence;
+        sequence = start + 1;
+        VarHandle.storeStoreFence();
+        System.arraycopy(pending, 0, current.levels, 0, current.bandCount);
+        sequence = start + 2;
+    }
+
+    private int computeHopSize() {
+        return Math.max(1, Math.round(sampleRate * updateMillis / 1000f));
+    }
+
+    /**
+     * Band edges for one band count and sample rate, with the published levels
+     * and the feeding thread's scratch copy.
+     */
+    private static final class BandLayout {
+        private final int bandCount;
+        private final int[] firstBin;
+        private final int[] endBin;
+        private final float[] levels;
+        private final float[] pending;
+
+        BandLayout(int bandCount, int fftSize, float sampleRate) {
+            this.bandCount = bandCount;
+            this.firstBin = new int[bandCount];
+            this.endBin = new int[bandCount];
+            this.levels = new float[bandCount];
+            this.pending = new float[bandCount];
+            Arrays.fill(levels, FLOOR_DB);
+
+            int half = fftSize / 2;
+            double binWidth = sampleRate / fftSize;
+            double maxFrequency = sampleRate / 2.0;
+            double ratio = Math.log(maxFrequency / MIN_FREQUENCY);
+            int previousEnd = 1; // skip DC
+            for (int band = 0; band < bandCount; band++) {
+                double upper = MIN_FREQUENCY * Math.exp(ratio * (band + 1) / bandCount);
+                int end = (int) Math.min(half + 1, Math.ceil(upper / binWidth));
+                // Low bands narrower than one bin still get a bin of their own
+                firstBin[band] = Math.min(previousEnd, half);
+                endBin[band] = Math.max(end, firstBin[band] + 1);
+                previousEnd = Math.max(previousEnd, endBin[band]);
+                if (previousEnd > half) {
+                    previousEnd = half;
+                }
+            }
+        }
+    }
+}
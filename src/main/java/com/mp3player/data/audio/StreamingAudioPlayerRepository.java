@@ -0,0 +1,572 @@
+package com.mp3player.data.audio;
+
+import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.repository.EqualizerRepository;
+import com.mp3player.domain.repository.MusicPlayerRepository;
+import javafx.application.Platform;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays songs by decoding them to PCM on a decoder thread and writing the
+ * samples to a {@link SourceDataLine} from an output thread. The two threads
+ * exchange preallocated blocks through a {@link PcmRingBuffer}, so nothing is
+ * allocated while a song is playing. Each session has a ring of its own, which
+ * only goes back to the pool once both of its threads have exited, and the
+ * caller never waits for the old threads: a new session's output thread does.
+ */
+public class StreamingAudioPlayerRepository implements MusicPlayerRepository, EqualizerRepository {
+    public static final int DEFAULT_BLOCK_COUNT = 16;
+    public static final int DEFAULT_BLOCK_SIZE = 8 * 1024;
+    public static final int DEFAULT_LINE_BUFFER_MILLIS = 100;
+
+    private static final long IDLE_PARK_NANOS = 2_000_000L;
+    private static final long JOIN_TIMEOUT_MILLIS = 1000;
+
+    private final AudioDecoderRegistry decoders;
+    private final int blockCount;
+    private final int blockSize;
+    private final int lineBufferMillis;
+    private final BiquadEqualizer equalizer = new BiquadEqualizer();
+    private final SpectrumAnalyzer spectrumAnalyzer = new SpectrumAnalyzer();
+    // Buffers no session thread uses any more, ready for the next session
+    private final ConcurrentLinkedQueue<SessionBuffers> idleBuffers = new ConcurrentLinkedQueue<>();
+
+    private SourceDataLine line;
+    private AudioFormat lineFormat;
+    private Session session;
+    private Thread lastOutputThread;
+    private Song currentSong;
+    private Runnable onEndOfMediaListener;
+    private double currentPlaybackSpeed = 1.0;
+
+    // Volume times track gain as a Q15 fixed point factor, applied in place on the output thread.
+    // Kept below 2x so a 16-bit sample times the factor still fits in an int
+    private static final double MAX_GAIN = 1.99;
+    private volatile int gainQ15 = 1 << 14;
+    private volatile double volume = 0.5;
+    private volatile double trackGain = 1.0;
+    private volatile long underrunCount;
+
+    public StreamingAudioPlayerRepository() {
+        this(AudioDecoderRegistry.createDefault(), DEFAULT_BLOCK_COUNT, DEFAULT_BLOCK_SIZE, DEFAULT_LINE_BUFFER_MILLIS);
+    }
+
+    public StreamingAudioPlayerRepository(AudioDecoderRegistry decoders, int blockCount, int blockSize,
+                                          int lineBufferMillis) {
+        this.decoders = decoders;
+        this.blockCount = blockCount;
+        this.blockSize = blockSize;
+        this.lineBufferMillis = Math.max(10, lineBufferMillis);
+        idleBuffers.add(new SessionBuffers(blockCount, blockSize));
+    }
+
+    @Override
+    public synchronized void play(Song song) {
+        closeSession();
+        currentSong = song;
+        try {
+            AudioInputStream stream = decoders.open(Paths.get(song.getFilePath()));
+            startSession(stream, song.getDuration(), 0, false);
+        } catch (IOException | UnsupportedAudioFileException | LineUnavailableException e) {
+            System.err.println("Error playing song: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void pause() {
+        if (session != null && !session.paused && !session.finished) {
+            session.paused = true;
+            line.stop();
+        }
+    }
+
+    @Override
+    public synchronized void resume() {
+        if (session != null && session.paused) {
+            session.paused = false;
+            line.start();
+            LockSupport.unpark(session.outputThread);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        closeSession();
+        currentSong = null;
+    }
+
+    @Override
+    public void setVolume(double volume) {
+        this.volume = Math.max(0.0, Math.min(1.0, volume));
+        updateGain();
+    }
+
+    @Override
+    public void setTrackGain(double gain) {
+        this.trackGain = Math.max(0.0, gain);
+        updateGain();
+    }
+
+    private void updateGain() {
+        gainQ15 = (int) Math.round(Math.min(MAX_GAIN, volume * trackGain) * (1 << 15));
+    }
+
+    @Override
+    public synchronized void setPlaybackSpeed(double speed) {
+        this.currentPlaybackSpeed = speed;
+        if (line != null) {
+            applyPlaybackSpeed();
+        }
+    }
+
+    @Override
+    public synchronized void seek(Duration position) {
+        if (session == null || currentSong == null) {
+            return;
+        }
+
+        boolean wasPaused = session.paused;
+        Duration total = session.totalDuration;
+        closeSession();
+        try {
+            AudioInputStream stream = decoders.open(Paths.get(currentSong.getFilePath()));
+            AudioFormat format = stream.getFormat();
+            long targetFrame = (long) (position.toMillis() * (double) format.getFrameRate() / 1000.0);
+            long skipped = skipFully(stream, targetFrame * format.getFrameSize());
+            startSession(stream, total, skipped / format.getFrameSize(), wasPaused);
+        } catch (IOException | UnsupportedAudioFileException | LineUnavailableException e) {
+            System.err.println("Error seeking: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized Duration getCurrentTime() {
+        if (session == null) {
+            return Duration.ZERO;
+        }
+        long frames = session.startFrame + line.getLongFramePosition() - session.lineFrameBase;
+        return Duration.ofMillis((long) (frames * 1000.0 / session.frameRate));
+    }
+
+    @Override
+    public synchronized Duration getTotalDuration() {
+        return session != null ? session.totalDuration : Duration.ZERO;
+    }
+
+    @Override
+    public synchronized boolean isPlaying() {
+        return session != null && !session.paused && !session.finished;
+    }
+
+    @Override
+    public synchronized boolean isPaused() {
+        return session != null && session.paused;
+    }
+
+    @Override
+    public void setOnEndOfMediaListener(Runnable listener) {
+        this.onEndOfMediaListener = listener;
+    }
+
+    @Override
+    public void setEqualizerEnabled(boolean enabled) {
+        equalizer.setEnabled(enabled);
+    }
+
+    @Override
+    public void setEqualizerBand(int bandIndex, double gain) {
+        equalizer.setBandGain(bandIndex, gain);
+    }
+
+    @Override
+    public void setAllEqualizerBands(double[] gains) {
+        equalizer.setAllBandGains(gains);
+    }
+
+    public SpectrumAnalyzer getSpectrumAnalyzer() {
+        return spectrumAnalyzer;
+    }
+
+    /**
+     * Number of times the output thread found no decoded audio waiting.
+     */
+    public long getUnderrunCount() {
+        return underrunCount;
+    }
+
+    public synchronized double getOutputLatencyMillis() {
+        if (line == null) {
+            return 0;
+        }
+        return line.getBufferSize() / (double) lineFormat.getFrameSize() / lineFormat.getFrameRate() * 1000.0;
+    }
+
+    public synchronized int getBufferedBlocks() {
+        return session != null ? session.buffers.ring.available() : 0;
+    }
+
+    /**
+     * Stops playback and releases the audio device.
+     */
+    public synchronized void close() {
+        stop();
+        if (line != null) {
+            line.close();
+            line = null;
+            lineFormat = null;
+        }
+    }
+
+    private void startSession(AudioInputStream stream, Duration knownDuration, long startFrame, boolean paused)
+            throws LineUnavailableException {
+        AudioFormat format = stream.getFormat();
+        try {
+            openLine(format);
+        } catch (LineUnavailableException e) {
+            closeQuietly(stream);
+            throw e;
+        }
+
+        Duration totalDuration = knownDuration;
+        if (stream.getFrameLength() != AudioSystem.NOT_SPECIFIED) {
+            totalDuration = Duration.ofMillis((long) (stream.getFrameLength() * 1000.0 / format.getFrameRate()));
+        }
+
+        equalizer.configure(format.getSampleRate(), format.getChannels());
+        spectrumAnalyzer.configure(format.getSampleRate(), format.getChannels());
+        SessionBuffers buffers = idleBuffers.poll();
+        if (buffers == null) {
+            buffers = new SessionBuffers(blockCount, blockSize); // the last session's threads are still exiting
+        }
+        Session next = new Session(stream, line, buffers, startFrame, line.getLongFramePosition(), totalDuration,
+                lastOutputThread);
+        lastOutputThread = next.outputThread;
+        next.paused = paused;
+        session = next;
+        next.start();
+        if (!paused) {
+            line.start();
+        }
+    }
+
+    private void openLine(AudioFormat format) throws LineUnavailableException {
+        if (line != null && lineFormat.matches(format)) {
+            return; // Same format: keep the device open between songs
+        }
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+
+        int frames = Math.max(1, Math.round(format.getFrameRate() * lineBufferMillis / 1000f));
+        SourceDataLine opened;
+        try {
+            opened = AudioSystem.getSourceDataLine(format);
+        } catch (IllegalArgumentException e) {
+            throw new LineUnavailableException("No output line for " + format);
+        }
+        opened.open(format, frames * format.getFrameSize());
+        line = opened;
+        lineFormat = format;
+        applyPlaybackSpeed();
+    }
+
+    // Changes the device sample rate when the line supports it, which also shifts the pitch
+    private void applyPlaybackSpeed() {
+        if (!line.isControlSupported(FloatControl.Type.SAMPLE_RATE)) {
+            return;
+        }
+        FloatControl sampleRate = (FloatControl) line.getControl(FloatControl.Type.SAMPLE_RATE);
+        float target = (float) (lineFormat.getSampleRate() * currentPlaybackSpeed);
+        sampleRate.setValue(Math.max(sampleRate.getMinimum(), Math.min(sampleRate.getMaximum(), target)));
+    }
+
+    private void closeSession() {
+        Session closing = session;
+        if (closing == null) {
+            return;
+        }
+        session = null;
+
+        // The threads exit on their own; the decoder closes the stream
+        closing.running = false;
+        line.stop();
+        line.flush(); // Unblocks a pending write
+        LockSupport.unpark(closing.decoderThread);
+        LockSupport.unpark(closing.outputThread);
+    }
+
+    private synchronized void onSessionFinished(Session finished) {
+        if (session != finished) {
+            return;
+        }
+        if (onEndOfMediaListener != null) {
+            onEndOfMediaListener.run();
+        }
+    }
+
+    private static long skipFully(AudioInputStream stream, long bytes) throws IOException {
+        long skipped = 0;
+        while (skipped < bytes) {
+            long step = stream.skip(bytes - skipped);
+            if (step <= 0) {
+                break;
+            }
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    private static void closeQuietly(AudioInputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            System.err.println("Error closing audio stream: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A ring and the DSP scratch block, owned by one session at a time.
+     */
+    private static final class SessionBuffers {
+        private final PcmRingBuffer ring;
+        private final float[] floatSamples;
+
+        SessionBuffers(int blockCount, int blockSize) {
+            this.ring = new PcmRingBuffer(blockCount, blockSize);
+            this.floatSamples = new float[blockSize / 2];
+        }
+    }
+
+    /**
+     * One song being played: a decoder thread filling the ring and an output
+     * thread draining it into the line.
+     */
+    private final class Session {
+        private final AudioInputStream stream;
+        private final SourceDataLine output;
+        private final SessionBuffers buffers;
+        private final PcmRingBuffer ring;
+        private final float[] floatSamples;
+        private final Thread previousOutputThread;
+        private final AtomicInteger liveThreads = new AtomicInteger(2);
+        private final int frameSize;
+        private final float frameRate;
+        private final long startFrame;
+        private final long lineFrameBase;
+        private final Duration totalDuration;
+        private final Thread decoderThread;
+        private final Thread outputThread;
+
+        private volatile boolean running = true;
+        private volatile boolean paused;
+        private volatile boolean decodeFinished;
+        private volatile boolean finished;
+
+        Session(AudioInputStream stream, SourceDataLine output, SessionBuffers buffers, long startFrame,
+                long lineFrameBase, Duration totalDuration, Thread previousOutputThread) {
+            this.stream = stream;
+            this.output = output;
+            this.buffers = buffers;
+            this.ring = buffers.ring;
+            this.floatSamples = buffers.floatSamples;
+            this.previousOutputThread = previousOutputThread;
+            this.frameSize = stream.getFormat().getFrameSize();
+            this.frameRate = stream.getFormat().getFrameRate();
+            this.startFrame = startFrame;
+            this.lineFrameBase = lineFrameBase;
+            this.totalDuration = totalDuration;
+
+            decoderThread = new Thread(this::decodeLoop, "audio-decoder");
+            decoderThread.setDaemon(true);
+            outputThread = new Thread(this::outputLoop, "audio-output");
+            outputThread.setDaemon(true);
+            outputThread.setPriority(Thread.MAX_PRIORITY);
+        }
+
+        void start() {
+            decoderThread.start();
+            outputThread.start();
+        }
+
+        private void decodeLoop() {
+            // Java Sound streams only accept reads of whole frames
+            int readLimit = ring.blockSize() - ring.blockSize() % frameSize;
+            try {
+                while (running) {
+                    ByteBuffer block = ring.claim();
+                    if (block == null) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                        continue;
+                    }
+
+                    byte[] bytes = block.array();
+                    int filled = 0;
+                    while (filled < readLimit) {
+                        int read = stream.read(bytes, filled, readLimit - filled);
+                        if (read < 0) {
+                            break;
+                        }
+                        filled += read;
+                    }
+
+                    if (filled > 0) {
+                        block.position(filled);
+                        ring.publish();
+                        LockSupport.unpark(outputThread);
+                    }
+                    if (filled < readLimit) {
+                        break; // end of stream
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error decoding audio: " + e.getMessage());
+            } finally {
+                decodeFinished = true;
+                LockSupport.unpark(outputThread);
+                closeQuietly(stream);
+                threadExited();
+            }
+        }
+
+        private void outputLoop() {
+            try {
+                awaitPreviousOutput();
+                writeLoop();
+            } finally {
+                threadExited();
+            }
+        }
+
+        // The last session's output thread may still be returning from a write to the shared line
+        private void awaitPreviousOutput() {
+            if (previousOutputThread == null) {
+                return;
+            }
+            try {
+                previousOutputThread.join(JOIN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // The ring is reset and reused only after both threads are done with it
+        private void threadExited() {
+            if (liveThreads.decrementAndGet() == 0) {
+                ring.reset();
+                idleBuffers.add(buffers);
+            }
+        }
+
+        private void writeLoop() {
+            int blockOffset = 0;
+            boolean starved = false;
+
+            while (running) {
+                if (paused) {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                ByteBuffer block = ring.peek();
+                if (block == null) {
+                    if (decodeFinished && ring.available() == 0) {
+                        break;
+                    }
+                    if (!starved) {
+                        starved = true;
+                        underrunCount++;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                starved = false;
+
+                byte[] bytes = block.array();
+                int length = block.limit();
+                if (blockOffset == 0) {
+                    processBlock(bytes, length);
+                }
+                // write() returns early when the line is stopped (pause) or flushed (stop)
+                blockOffset += output.write(bytes, blockOffset, length - blockOffset);
+                if (blockOffset >= length) {
+                    blockOffset = 0;
+                    ring.release();
+                    LockSupport.unpark(decoderThread);
+                }
+            }
+
+            // Let the line play out what it holds before reporting the end of the song
+            while (running) {
+                if (paused) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                output.drain();
+                if (!paused) {
+                    break;
+                }
+            }
+            if (running) {
+                finished = true;
+                Platform.runLater(() -> onSessionFinished(this));
+            }
+        }
+
+        // Runs the equalizer and volume over signed 16-bit little-endian samples in place
+        private void processBlock(byte[] bytes, int length) {
+            int gain = gainQ15;
+            if (!equalizer.isActive()) {
+                spectrumAnalyzer.accept(bytes, length);
+                if (gain != 1 << 15) {
+                    scaleSamples(bytes, length, gain);
+                }
+                equalizer.process(floatSamples, 0); // lets the equalizer see it was bypassed
+                return;
+            }
+
+            int samples = length / 2;
+            float[] floats = floatSamples;
+            for (int i = 0; i < samples; i++) {
+                floats[i] = (short) ((bytes[2 * i] & 0xFF) | (bytes[2 * i + 1] << 8));
+            }
+
+            equalizer.process(floats, length / frameSize);
+            spectrumAnalyzer.accept(floats, samples);
+
+            float volume = gain / (float) (1 << 15);
+            for (int i = 0; i < samples; i++) {
+                int sample = Math.round(floats[i] * volume);
+                sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+                bytes[2 * i] = (byte) sample;
+                bytes[2 * i + 1] = (byte) (sample >> 8);
+            }
+        }
+
+        private void scaleSamples(byte[] bytes, int length, int gain) {
+            for (int i = 0; i + 1 < length; i += 2) {
+                int sample = (short) ((bytes[i] & 0xFF) | (bytes[i + 1] << 8));
+                sample = (sample * gain) >> 15;
+                sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+                bytes[i] = (byte) sample;
+                bytes[i + 1] = (byte) (sample >> 8);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.mp3player.data.audio;
+
+import com.mp3player.data.library.AppDataDirectory;
+import com.mp3player.domain.entity.Waveform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Waveforms on disk, one small file per track version. The file name is
+ * derived from the track's path, size and modification time, so an edited
+ * file gets a new waveform and the one for its previous version is deleted.
+ * Cached files are memory-mapped rather than read.
+ */
+public class WaveformCache {
+    private static final int MAGIC = 0x4D505746; // "MPWF"
+    private static final int VERSION = 1;
+    private static final int MAX_LEVELS = 32;
+
+    private final Path directory;
+
+    public WaveformCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static WaveformCache openDefault() {
+        return new WaveformCache(AppDataDirectory.resolve("waveforms"));
+    }
+
+    public String keyFor(Path audioFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(audioFile, BasicFileAttributes.class);
+        return String.format("%08x-%x-%x", audioFile.toAbsolutePath().toString().hashCode(),
+                attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    // Returns null when there is no usable cached waveform
+    public Waveform read(String key) {
+        try (FileChannel channel = FileChannel.open(fileFor(key), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.remaining() < 12 || map.getInt() != MAGIC || map.getInt() != VERSION) {
+                return null;
+            }
+            int levelCount = map.getInt();
+            if (levelCount < 1 || levelCount > MAX_LEVELS || map.remaining() < 4 * levelCount) {
+                return null;
+            }
+            int[] binCounts = new int[levelCount];
+            long peakBytes = 0;
+            for (int level = 0; level < levelCount; level++) {
+                binCounts[level] = map.getInt();
+                peakBytes += 2L * binCounts[level];
+            }
+            if (binCounts[0] < 0 || map.remaining() < peakBytes) {
+                return null;
+            }
+            return new Waveform(binCounts, map.slice());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Error reading waveform cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(String key, Waveform waveform) throws IOException {
+        Files.createDirectories(directory);
+        Path target = fileFor(key);
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+
+        int[] binCounts = waveform.getBinCounts();
+        ByteBuffer header = ByteBuffer.allocate(12 + 4 * binCounts.length);
+        header.putInt(MAGIC).putInt(VERSION).putInt(binCounts.length);
+        for (int count : binCounts) {
+            header.putInt(count);
+        }
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer peaks = waveform.getPeaks();
+            while (header.hasRemaining() || peaks.hasRemaining()) {
+                channel.write(new ByteBuffer[] {header, peaks});
+            }
+        }
+
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        deleteOtherVersions(key);
+    }
+
+    // Deletes waveforms of earlier versions of the track, which share the path part of the key
+    private void deleteOtherVersions(String key) {
+        String pathPart = key.substring(0, key.indexOf('-') + 1);
+        String current = key + ".wf";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, pathPart + "*.wf")) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().equals(current)) {
+                    continue;
+                }
+                try {
+                    // A path hash collision only costs the other track a re-extraction
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // Still mapped on some platforms; pruned again with the next version
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error pruning waveform cache: " + e.getMessage());
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + ".wf");
+    }
+}
@@ -0,0 +1,123 @@
+package com.mp3player.data.audio;
+
+import com.mp3player.domain.entity.Waveform;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Decodes a track once and reduces it to min/max peaks. Samples are folded
+ * into about {@value #BASE_BINS} bins while decoding; when the length of the
+ * track is not known up front, bins are merged in pairs whenever the array
+ * fills up, so memory stays fixed. The coarser levels are built from the
+ * finest one.
+ */
+public class WaveformExtractor {
+    static final int BASE_BINS = 4096;
+    private static final int MIN_BINS = 128;
+    private static final int READ_FRAMES = 4096;
+
+    private final AudioDecoderRegistry decoders;
+
+    public WaveformExtractor(AudioDecoderRegistry decoders) {
+        this.decoders = decoders;
+    }
+
+    public Waveform extract(Path file) throws IOException, UnsupportedAudioFileException {
+        short[] mins = new short[2 * BASE_BINS];
+        short[] maxs = new short[2 * BASE_BINS];
+        int bins = 0;
+
+        try (AudioInputStream in = decoders.open(file)) {
+            int frameSize = in.getFormat().getChannels() * 2;
+            long frameLength = in.getFrameLength();
+            long framesPerBin = frameLength > 0 ? Math.max(1, (frameLength + BASE_BINS - 1) / BASE_BINS) : 1024;
+
+            byte[] buffer = new byte[frameSize * READ_FRAMES];
+            long framesInBin = 0;
+            int binMin = Short.MAX_VALUE;
+            int binMax = Short.MIN_VALUE;
+            int read;
+            // Audio input streams only return whole frames
+            while ((read = in.read(buffer, 0, buffer.length)) > 0) {
+                for (int frame = 0; frame + frameSize <= read; frame += frameSize) {
+                    // 16-bit little-endian, all channels folded together
+                    for (int i = frame; i < frame + frameSize; i += 2) {
+                        int sample = (buffer[i + 1] << 8) | (buffer[i] & 0xff);
+                        if (sample < binMin) {
+                            binMin = sample;
+                        }
+                        if (sample > binMax) {
+                            binMax = sample;
+                        }
+                    }
+                    if (++framesInBin == framesPerBin) {
+                        mins[bins] = (short) binMin;
+                        maxs[bins] = (short) binMax;
+                        bins++;
+                        framesInBin = 0;
+                        binMin = Short.MAX_VALUE;
+                        binMax = Short.MIN_VALUE;
+                        if (bins == mins.length) {
+                            bins = mergePairs(mins, maxs, bins);
+                            framesPerBin *= 2;
+                        }
+                    }
+                }
+            }
+            if (framesInBin > 0) {
+                mins[bins] = (short) binMin;
+                maxs[bins] = (short) binMax;
+                bins++;
+            }
+        }
+        return buildLevels(mins, maxs, bins);
+    }
+
+    private static int mergePairs(short[] mins, short[] maxs, int bins) {
+        int merged = (bins + 1) / 2;
+        for (int i = 0; i < merged; i++) {
+            int a = 2 * i;
+            int b = Math.min(a + 1, bins - 1);
+            mins[i] = (short) Math.min(mins[a], mins[b]);
+            maxs[i] = (short) Math.max(maxs[a], maxs[b]);
+        }
+        return merged;
+    }
+
+    private static Waveform buildLevels(short[] mins, short[] maxs, int bins) {
+        int levelCount = 1;
+        for (int count = bins; count > MIN_BINS; count = (count + 1) / 2) {
+            levelCount++;
+        }
+        int[] binCounts = new int[levelCount];
+        int total = 0;
+        for (int level = 0, count = bins; level < levelCount; level++, count = (count + 1) / 2) {
+            binCounts[level] = count;
+            total += 2 * count;
+        }
+
+        ByteBuffer peaks = ByteBuffer.allocate(total);
+        for (int i = 0; i < bins; i++) {
+            peaks.put((byte) (mins[i] >> 8));
+            peaks.put((byte) (maxs[i] >> 8));
+        }
+        // Each coarser level merges neighbouring pairs of the level before
+        int source = 0;
+        for (int level = 1; level < levelCount; level++) {
+            int previousCount = binCounts[level - 1];
+            for (int i = 0; i < binCounts[level]; i++) {
+                int a = source + 4 * i;
+                int b = source + 2 * Math.min(2 * i + 1, previousCount - 1);
+                peaks.put((byte) Math.min(peaks.get(a), peaks.get(b)));
+                peaks.put((byte) Math.max(peaks.get(a + 1), peaks.get(b + 1)));
+            }
+            source += 2 * previousCount;
+        }
+        peaks.flip();
+        return new Waveform(binCounts, peaks);
+    }
+}
@@ -0,0 +1,19 @@
+package com.mp3player.data.library;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public final class AppDataDirectory {
+    private static final String DIRECTORY_NAME = ".mp3player";
+
+    private AppDataDirectory() {
+    }
+
+    public static Path get() {
+        return Paths.get(System.getProperty("user.home"), DIRECTORY_NAME);
+    }
+
+    public static Path resolve(String fileName) {
+        return get().resolve(fileName);
+    }
+}
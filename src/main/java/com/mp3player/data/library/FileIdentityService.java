@@ -0,0 +1,106 @@
+package com.mp3player.data.library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Identifies audio files by their content rather than their path, so a file
+ * keeps its identity when it is moved, renamed or retagged. The fingerprint is
+ * an xxHash64 over a few blocks sampled across the audio payload, with ID3v2,
+ * ID3v1 and APEv2 tags left out. Each file costs a handful of positioned reads
+ * regardless of its size, and the service is safe to use from many threads.
+ */
+public class FileIdentityService {
+    private static final int SAMPLE_SIZE = 16 * 1024;
+    private static final int SAMPLE_COUNT = 4;
+    private static final int ID3V1_SIZE = 128;
+    private static final int APE_FOOTER_SIZE = 32;
+
+    // One sample buffer per scanning thread
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[SAMPLE_SIZE]);
+
+    /**
+     * Returns the content id of the file: files with the same audio payload get
+     * the same id, formatted like the path based ids.
+     */
+    public String fingerprint(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] buffer = buffers.get();
+            long start = payloadStart(channel, buffer);
+            long end = payloadEnd(channel, buffer, size);
+            if (end <= start) {
+                start = 0;
+                end = size;
+            }
+
+            long payload = end - start;
+            long hash = payload;
+            if (payload <= (long) SAMPLE_SIZE * SAMPLE_COUNT) {
+                for (long position = start; position < end; position += SAMPLE_SIZE) {
+                    int length = (int) Math.min(SAMPLE_SIZE, end - position);
+                    hash = XxHash64.hash(buffer, 0, read(channel, buffer, position, length), hash);
+                }
+            } else {
+                // Evenly spread blocks, the first at the start and the last at the end of the payload
+                long stride = (payload - SAMPLE_SIZE) / (SAMPLE_COUNT - 1);
+                for (int i = 0; i < SAMPLE_COUNT; i++) {
+                    hash = XxHash64.hash(buffer, 0, read(channel, buffer, start + i * stride, SAMPLE_SIZE), hash);
+                }
+            }
+            return new UUID(hash, payload).toString();
+        }
+    }
+
+    // Skips an ID3v2 tag at the start of the file
+    private static long payloadStart(FileChannel channel, byte[] buffer) throws IOException {
+        if (read(channel, buffer, 0, 10) < 10 || buffer[0] != 'I' || buffer[1] != 'D' || buffer[2] != '3') {
+            return 0;
+        }
+        long tagSize = ((buffer[6] & 0x7F) << 21) | ((buffer[7] & 0x7F) << 14)
+                | ((buffer[8] & 0x7F) << 7) | (buffer[9] & 0x7F);
+        boolean footer = (buffer[5] & 0x10) != 0;
+        return 10 + tagSize + (footer ? 10 : 0);
+    }
+
+    // Skips ID3v1 and APEv2 tags at the end of the file, in either order
+    private static long payloadEnd(FileChannel channel, byte[] buffer, long size) throws IOException {
+        long end = size;
+        for (int pass = 0; pass < 2; pass++) {
+            long tagsEnd = end;
+            if (end >= ID3V1_SIZE && read(channel, buffer, end - ID3V1_SIZE, 3) == 3
+                    && buffer[0] == 'T' && buffer[1] == 'A' && buffer[2] == 'G') {
+                end -= ID3V1_SIZE;
+            }
+            if (end >= APE_FOOTER_SIZE && read(channel, buffer, end - APE_FOOTER_SIZE, APE_FOOTER_SIZE) == APE_FOOTER_SIZE
+                    && "APETAGEX".equals(new String(buffer, 0, 8, StandardCharsets.US_ASCII))) {
+                ByteBuffer footer = ByteBuffer.wrap(buffer, 0, APE_FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                long tagSize = footer.getInt(12) & 0xFFFFFFFFL; // items and footer
+                boolean header = (footer.getInt(20) & 0x80000000) != 0;
+                end -= tagSize + (header ? APE_FOOTER_SIZE : 0);
+            }
+            if (end == tagsEnd) {
+                break;
+            }
+        }
+        return Math.max(0, end);
+    }
+
+    // Positioned read that leaves the channel position alone; returns the bytes read
+    private static int read(FileChannel channel, byte[] buffer, long position, int length) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + target.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        return target.position();
+    }
+}
@@ -0,0 +1,367 @@
+package com.mp3player.data.library;
+
+import com.mp3player.domain.entity.Song;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * On-disk index of every audio file seen by the scanner, keyed by absolute path.
+ * Unchanged files (same size and modification time) are served from the index,
+ * so rescans only build songs for new or modified files and song ids stay
+ * stable across runs. New songs take their id from the content fingerprint.
+ * A file found at a new path keeps the id its content had only if that
+ * content's old path is gone, so moved and renamed files stay the same song
+ * while copies of a file at other paths are songs of their own.
+ */
+public class LibraryIndex {
+    private static final int MAGIC = 0x4D50494C; // "MPIL"
+    private static final int VERSION = 3;
+    // Entries from this version have no content id yet; it is filled in on the next scan
+    private static final int PATH_ONLY_VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Owner of a content id that is still a song's id but no longer any file's content
+    private static final String RETIRED = "";
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Content id -> the path that owns it, and entries dropped by removeMissing; guarded by contentOwners
+    private final Map<String, String> contentOwners = new HashMap<>();
+    private final Map<String, Entry> departedByContent = new HashMap<>();
+    private final FileIdentityService identityService;
+    private boolean loaded;
+    private volatile boolean dirty;
+
+    public LibraryIndex(Path indexFile) {
+        this(indexFile, new FileIdentityService());
+    }
+
+    public LibraryIndex(Path indexFile, FileIdentityService identityService) {
+        this.indexFile = indexFile;
+        this.identityService = identityService;
+    }
+
+    public static LibraryIndex openDefault() {
+        return new LibraryIndex(AppDataDirectory.resolve("library.idx"));
+    }
+
+    public synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile), BUFFER_SIZE))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != PATH_ONLY_VERSION) {
+                // Unknown layout: start over and rewrite on next save
+                dirty = true;
+                return;
+            }
+            dirty = version != VERSION;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String id = in.readUTF();
+                String contentId = version == VERSION ? in.readUTF() : "";
+                String title = in.readUTF();
+                String artist = in.readUTF();
+                String album = in.readUTF();
+                long durationMillis = in.readLong();
+
+                Song song = new Song(id, title, artist, album, path, Duration.ofMillis(durationMillis));
+                entries.put(path, new Entry(size, lastModified, contentId, song));
+                ownContent(contentId, path);
+            }
+
+            // Ids taken from content a file has since lost must not be handed out again
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                String id = entry.song.getId();
+                if (!entry.contentId.isEmpty() && !id.equals(entry.contentId)
+                        && !id.equals(stableIdFor(mapEntry.getKey()))) {
+                    synchronized (contentOwners) {
+                        contentOwners.putIfAbsent(id, RETIRED);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading library index: " + e.getMessage());
+            entries.clear();
+            synchronized (contentOwners) {
+                contentOwners.clear();
+            }
+            dirty = true;
+        }
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        // Cleared before the snapshot so entries resolved during the write dirty it again
+        dirty = false;
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+                List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> mapEntry : snapshot) {
+                    Entry entry = mapEntry.getValue();
+                    Song song = entry.song;
+                    out.writeUTF(mapEntry.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeUTF(song.getId());
+                    out.writeUTF(entry.contentId);
+                    out.writeUTF(song.getTitle());
+                    out.writeUTF(song.getArtist());
+                    out.writeUTF(song.getAlbum());
+                    out.writeLong(song.getDuration().toMillis());
+                }
+            }
+
+            moveIntoPlace(tempFile);
+        } catch (IOException e) {
+            System.err.println("Error saving library index: " + e.getMessage());
+            dirty = true;
+        }
+    }
+
+    /**
+     * Returns the indexed song for the file if it is unchanged since the last scan,
+     * otherwise builds a new one with the factory and records it. The factory gets
+     * the stable id to use for the song: the one the path or, for a moved file,
+     * the content already had, else the content id, or a path based id for a
+     * copy of a file that is still in place.
+     */
+    public Song resolve(ScannedFile file, long scanStamp, BiFunction<ScannedFile, String, Song> songFactory) {
+        String path = file.getPath().toAbsolutePath().toString();
+        Entry entry = entries.get(path);
+
+        if (entry != null && entry.size == file.getSize() && entry.lastModified == file.getLastModified()) {
+            entry.scanStamp = scanStamp;
+            if (entry.contentId.isEmpty()) {
+                fillContentId(entry, path, file.getPath());
+            }
+            return entry.song;
+        }
+
+        String contentId = fingerprint(file.getPath());
+        Entry previous;
+        String id;
+        if (entry != null) {
+            // A modified file keeps its id, but no longer owns content it does not have
+            if (!entry.contentId.equals(contentId)) {
+                releaseContent(entry.contentId, path, entry.song.getId());
+            }
+            ownContent(contentId, path);
+            previous = entry;
+            id = entry.song.getId();
+        } else {
+            previous = claimMovedContent(contentId, path);
+            id = previous != null ? previous.song.getId()
+                    : ownContent(contentId, path) ? contentId : stableIdFor(path);
+        }
+        Song song = songFactory.apply(file, id);
+        if (previous != null) {
+            song.setFavorite(previous.song.isFavorite());
+        }
+
+        Entry updated = new Entry(file.getSize(), file.getLastModified(), contentId, song);
+        updated.scanStamp = scanStamp;
+        entries.put(path, updated);
+        dirty = true;
+        return song;
+    }
+
+    /**
+     * Id for a file that is not indexed, such as a playlist entry outside the
+     * scanned folders. Follows the same rules as {@link #resolve} without
+     * recording anything.
+     */
+    public String identify(Path file) {
+        String path = file.toAbsolutePath().toString();
+        String contentId = fingerprint(file);
+        if (contentId.isEmpty()) {
+            return stableIdFor(path);
+        }
+        synchronized (contentOwners) {
+            String owner = contentOwners.get(contentId);
+            if (RETIRED.equals(owner)) {
+                return stableIdFor(path);
+            }
+            Entry known = owner != null ? entries.get(owner) : departedByContent.get(contentId);
+            if (known == null) {
+                return contentId;
+            }
+            if (owner == null || owner.equals(path) || !Files.exists(Paths.get(owner))) {
+                return known.song.getId();
+            }
+            return stableIdFor(path);
+        }
+    }
+
+    private void fillContentId(Entry entry, String path, Path file) {
+        String contentId = fingerprint(file);
+        if (!contentId.isEmpty()) {
+            entry.contentId = contentId;
+            ownContent(contentId, path);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Hands the content over to the new path if the file that had it is gone,
+     * either from disk or from the index, and returns that file's entry. Null
+     * when the content is new or still in place at another path.
+     */
+    private Entry claimMovedContent(String contentId, String path) {
+        if (contentId.isEmpty()) {
+            return null;
+        }
+        synchronized (contentOwners) {
+            String owner = contentOwners.get(contentId);
+            Entry moved;
+            if (owner == null) {
+                moved = departedByContent.remove(contentId);
+            } else if (owner.equals(RETIRED)) {
+                return null;
+            } else if (!Files.exists(Paths.get(owner))) {
+                moved = entries.get(owner);
+            } else {
+                return null; // a copy: both files stay separate songs
+            }
+            if (moved != null) {
+                contentOwners.put(contentId, path);
+            }
+            return moved;
+        }
+    }
+
+    // Makes the path own the content unless another path already does; true if the path owns it
+    private boolean ownContent(String contentId, String path) {
+        if (contentId.isEmpty()) {
+            return false;
+        }
+        synchronized (contentOwners) {
+            return contentOwners.computeIfAbsent(contentId, id -> path).equals(path);
+        }
+    }
+
+    private void releaseContent(String contentId, String path, String songId) {
+        synchronized (contentOwners) {
+            if (contentOwners.remove(contentId, path) && contentId.equals(songId)) {
+                // The song keeps its id, so no other file may take the content id as its own
+                contentOwners.put(contentId, RETIRED);
+            }
+        }
+    }
+
+    // Empty when the file cannot be read
+    private String fingerprint(Path file) {
+        try {
+            return identityService.fingerprint(file);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Returns the indexed song for the file if it is unchanged since it was
+     * indexed, without recording anything.
+     */
+    public Song lookup(ScannedFile file) {
+        Entry entry = entries.get(file.getPath().toAbsolutePath().toString());
+        if (entry != null && entry.size == file.getSize() && entry.lastModified == file.getLastModified()) {
+            return entry.song;
+        }
+        return null;
+    }
+
+    /**
+     * Drops entries below the root that were not seen by the scan with the given stamp.
+     */
+    public void removeMissing(Path root, long scanStamp) {
+        String prefix = root.toAbsolutePath().toString();
+        if (!prefix.endsWith(root.getFileSystem().getSeparator())) {
+            prefix += root.getFileSystem().getSeparator();
+        }
+
+        final String rootPrefix = prefix;
+        if (entries.entrySet().removeIf(mapEntry -> {
+            Entry entry = mapEntry.getValue();
+            if (!mapEntry.getKey().startsWith(rootPrefix) || entry.scanStamp == scanStamp) {
+                return false;
+            }
+            synchronized (contentOwners) {
+                // Remembered for the session, so the file can still turn up under another root
+                if (contentOwners.remove(entry.contentId, mapEntry.getKey())) {
+                    departedByContent.put(entry.contentId, entry);
+                }
+            }
+            return true;
+        })) {
+            dirty = true;
+        }
+    }
+
+    private void moveIntoPlace(Path tempFile) throws IOException {
+        try {
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static String stableIdFor(String path) {
+        return UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        // Empty until the file has been fingerprinted
+        private volatile String contentId;
+        private final Song song;
+        private volatile long scanStamp;
+
+        Entry(long size, long lastModified, String contentId, Song song) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentId = contentId;
+            this.song = song;
+        }
+    }
+}
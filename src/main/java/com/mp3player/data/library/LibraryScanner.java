@@ -0,0 +1,206 @@
+package com.mp3player.data.library;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Recursively scans a music folder for audio files.
+ * Each directory is listed by its own fork/join task, so nested artist/album
+ * folders are traversed in parallel. Files are handed out in batches as soon
+ * as they are found; the batch consumer may be called from several worker
+ * threads at once.
+ */
+public class LibraryScanner {
+    public static final Set<String> SUPPORTED_EXTENSIONS = Set.of("mp3", "wav", "m4a");
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    // Directory listing is I/O bound, so use more workers than cores
+    private static final ForkJoinPool SCAN_POOL =
+            new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private final int batchSize;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicLong directoriesScanned = new AtomicLong();
+    private final AtomicLong directoriesFound = new AtomicLong();
+    private final AtomicLong filesFound = new AtomicLong();
+    private final Object batchLock = new Object();
+    private List<ScannedFile> pendingBatch;
+    private Consumer<List<ScannedFile>> batchConsumer;
+    private ScanProgressListener progressListener;
+
+    public LibraryScanner() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    public LibraryScanner(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public void setProgressListener(ScanProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public void scan(Path root, Consumer<List<ScannedFile>> batchConsumer) {
+        if (root == null || !Files.isDirectory(root)) {
+            return;
+        }
+
+        this.batchConsumer = batchConsumer;
+        this.pendingBatch = new ArrayList<>(batchSize);
+
+        directoriesFound.incrementAndGet();
+        SCAN_POOL.invoke(new DirectoryTask(root));
+
+        // Deliver whatever is left over from the last directories
+        List<ScannedFile> remaining;
+        synchronized (batchLock) {
+            remaining = pendingBatch;
+            pendingBatch = new ArrayList<>(batchSize);
+        }
+        if (!remaining.isEmpty() && !isCancelled()) {
+            deliver(remaining);
+        }
+        reportProgress();
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public long getDirectoriesScanned() {
+        return directoriesScanned.get();
+    }
+
+    public long getDirectoriesFound() {
+        return directoriesFound.get();
+    }
+
+    public long getFilesFound() {
+        return filesFound.get();
+    }
+
+    public static boolean isSupportedFile(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        if (lastDotIndex <= 0 || lastDotIndex == fileName.length() - 1) {
+            return false;
+        }
+        return SUPPORTED_EXTENSIONS.contains(fileName.substring(lastDotIndex + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private void collect(List<ScannedFile> files) {
+        List<ScannedFile> ready = null;
+        synchronized (batchLock) {
+            pendingBatch.addAll(files);
+            if (pendingBatch.size() >= batchSize) {
+                ready = pendingBatch;
+                pendingBatch = new ArrayList<>(batchSize);
+            }
+        }
+        // Hand the batch over outside the lock so other workers can keep collecting
+        if (ready != null) {
+            deliver(ready);
+        }
+    }
+
+    private void deliver(List<ScannedFile> batch) {
+        try {
+            batchConsumer.accept(batch);
+        } catch (RuntimeException e) {
+            System.err.println("Error handling scanned files: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void reportProgress() {
+        ScanProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onProgress(directoriesScanned.get(), directoriesFound.get(), filesFound.get());
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+
+        DirectoryTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            if (isCancelled()) {
+                return;
+            }
+
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            List<ScannedFile> files = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    if (isCancelled()) {
+                        break;
+                    }
+
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attributes.isSymbolicLink()) {
+                            // Linked files are scanned, linked directories are not, so link cycles cannot loop
+                            BasicFileAttributes target = Files.readAttributes(entry, BasicFileAttributes.class);
+                            if (!target.isRegularFile()) {
+                                continue;
+                            }
+                            attributes = target;
+                        }
+                    } catch (IOException e) {
+                        continue;
+                    }
+
+                    if (attributes.isDirectory()) {
+                        directoriesFound.incrementAndGet();
+                        DirectoryTask task = new DirectoryTask(entry);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else if (attributes.isRegularFile() && isSupportedFile(entry.getFileName().toString())) {
+                        files.add(new ScannedFile(entry, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error scanning directory: " + directory + " (" + e.getMessage() + ")");
+            }
+
+            directoriesScanned.incrementAndGet();
+            if (!files.isEmpty()) {
+                // Keep album tracks in file name order
+                files.sort(Comparator.comparing(file -> file.getPath().getFileName().toString()));
+                filesFound.addAndGet(files.size());
+                collect(files);
+            }
+            reportProgress();
+
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+    }
+}
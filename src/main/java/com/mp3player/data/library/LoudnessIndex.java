@@ -0,0 +1,194 @@
+package com.mp3player.data.library;
+
+import com.mp3player.domain.entity.Loudness;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk loudness measurements next to the library index, keyed by absolute
+ * path. A measurement is only used while the file keeps the size and
+ * modification time it was measured with. Album loudness is combined from
+ * the tracks that share an album name and folder.
+ */
+public class LoudnessIndex {
+    private static final int MAGIC = 0x4D504C4E; // "MPLN"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile Map<String, Loudness> albums;
+    // Loading has its own lock so it never waits for a save, which holds the index's monitor
+    private final Object loadLock = new Object();
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    public LoudnessIndex(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    public static LoudnessIndex openDefault() {
+        return new LoudnessIndex(AppDataDirectory.resolve("loudness.idx"));
+    }
+
+    public void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (!loaded) {
+                readIndexFile();
+                loaded = true;
+            }
+        }
+    }
+
+    // True once load() has finished, so readers can skip an index that is still loading
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private void readIndexFile() {
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                // Unknown layout: start over and rewrite on next save
+                dirty = true;
+                return;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String album = in.readUTF();
+                Loudness loudness = new Loudness(in.readDouble(), in.readDouble(), in.readInt());
+                entries.put(path, new Entry(size, lastModified, album, loudness));
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading loudness index: " + e.getMessage());
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        // Cleared before the snapshot so measurements added during the write dirty it again
+        dirty = false;
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+                List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> mapEntry : snapshot) {
+                    Entry entry = mapEntry.getValue();
+                    out.writeUTF(mapEntry.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeUTF(entry.album);
+                    out.writeDouble(entry.loudness.getIntegratedLufs());
+                    out.writeDouble(entry.loudness.getTruePeakDbtp());
+                    out.writeInt(entry.loudness.getGatedBlocks());
+                }
+            }
+
+            try {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving loudness index: " + e.getMessage());
+            dirty = true;
+        }
+    }
+
+    // The measurement for the file if it has not changed since, otherwise null
+    public Loudness lookup(String path, long size, long lastModified) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            return entry.loudness;
+        }
+        return null;
+    }
+
+    // Latest measurement for the path, without checking the file
+    public Loudness get(String path) {
+        Entry entry = entries.get(path);
+        return entry != null ? entry.loudness : null;
+    }
+
+    public void put(String path, long size, long lastModified, String album, Loudness loudness) {
+        entries.put(path, new Entry(size, lastModified, album, loudness));
+        albums = null;
+        dirty = true;
+    }
+
+    // Combined loudness of the album the path belongs to, or null if it has none
+    public Loudness getAlbum(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null || entry.album.isEmpty()) {
+            return null;
+        }
+        Map<String, Loudness> current = albums;
+        if (current == null) {
+            current = combineAlbums();
+            albums = current;
+        }
+        return current.get(entry.album);
+    }
+
+    private Map<String, Loudness> combineAlbums() {
+        Map<String, List<Loudness>> tracks = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.album.isEmpty()) {
+                tracks.computeIfAbsent(entry.album, album -> new ArrayList<>()).add(entry.loudness);
+            }
+        }
+        Map<String, Loudness> combined = new HashMap<>(tracks.size() * 2);
+        tracks.forEach((album, loudness) -> combined.put(album, Loudness.combine(loudness)));
+        return combined;
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        // Album name and folder, empty when the track has no album
+        private final String album;
+        private final Loudness loudness;
+
+        Entry(long size, long lastModified, String album, Loudness loudness) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.album = album;
+            this.loudness = loudness;
+        }
+    }
+}
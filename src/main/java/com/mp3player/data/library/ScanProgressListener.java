@@ -0,0 +1,7 @@
+package com.mp3player.data.library;
+
+@FunctionalInterface
+public interface ScanProgressListener {
+    // Called from the scanning threads each time a directory is done
+    void onProgress(long directoriesScanned, long directoriesFound, long filesFound);
+}
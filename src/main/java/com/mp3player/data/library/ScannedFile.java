@@ -0,0 +1,32 @@
+package com.mp3player.data.library;
+
+import java.nio.file.Path;
+
+public class ScannedFile {
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+
+    public ScannedFile(Path path, long size, long lastModified) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
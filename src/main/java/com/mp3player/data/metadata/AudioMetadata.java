@@ -0,0 +1,62 @@
+package com.mp3player.data.metadata;
+
+public class AudioMetadata {
+    private String title;
+    private String artist;
+    private String album;
+    private long durationMillis;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public void setArtist(String artist) {
+        this.artist = artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public void setAlbum(String album) {
+        this.album = album;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    void setTitleIfMissing(String value) {
+        if (isBlank(title) && !isBlank(value)) {
+            title = value;
+        }
+    }
+
+    void setArtistIfMissing(String value) {
+        if (isBlank(artist) && !isBlank(value)) {
+            artist = value;
+        }
+    }
+
+    void setAlbumIfMissing(String value) {
+        if (isBlank(album) && !isBlank(value)) {
+            album = value;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
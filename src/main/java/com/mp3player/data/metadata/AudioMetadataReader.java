@@ -0,0 +1,56 @@
+package com.mp3player.data.metadata;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Extracts title, artist, album and duration straight from the file headers,
+ * without creating a JavaFX Media. Safe to call from several threads; each
+ * thread reuses its own read buffer.
+ */
+public class AudioMetadataReader {
+    private static final ThreadLocal<ChannelWindow> WINDOWS = ThreadLocal.withInitial(ChannelWindow::new);
+
+    private final Mp3MetadataParser mp3Parser = new Mp3MetadataParser();
+    private final WavMetadataParser wavParser = new WavMetadataParser();
+    private final M4aMetadataParser m4aParser = new M4aMetadataParser();
+
+    public AudioMetadata read(Path path) {
+        AudioMetadata metadata = new AudioMetadata();
+        String extension = getExtension(path.getFileName().toString());
+        ChannelWindow window = WINDOWS.get();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            window.open(channel);
+            switch (extension) {
+                case "mp3":
+                    mp3Parser.parse(window, metadata);
+                    break;
+                case "wav":
+                    wavParser.parse(window, metadata);
+                    break;
+                case "m4a":
+                case "mp4":
+                case "aac":
+                    m4aParser.parse(window, metadata);
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading metadata: " + path + " (" + e.getMessage() + ")");
+        } finally {
+            window.close();
+        }
+
+        return metadata;
+    }
+
+    private static String getExtension(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        return lastDotIndex > 0 ? fileName.substring(lastDotIndex + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
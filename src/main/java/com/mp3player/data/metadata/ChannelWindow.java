@@ -0,0 +1,151 @@
+package com.mp3player.data.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Small sliding window over a file channel. Parsers address bytes by absolute
+ * file position and the window refills itself with a positioned read whenever
+ * a request falls outside the bytes it currently holds.
+ */
+class ChannelWindow {
+    static final int WINDOW_SIZE = 16 * 1024;
+
+    private final byte[] bytes = new byte[WINDOW_SIZE];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private FileChannel channel;
+    private long fileSize;
+    private long windowStart;
+    private int windowLength;
+
+    void open(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.windowStart = 0;
+        this.windowLength = 0;
+    }
+
+    void close() {
+        channel = null;
+    }
+
+    long fileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Makes sure the given range is buffered. Returns false when the range runs
+     * past the end of the file or is larger than the window.
+     */
+    boolean ensure(long position, int length) throws IOException {
+        if (position < 0 || length > WINDOW_SIZE || position + length > fileSize) {
+            return false;
+        }
+        if (position >= windowStart && position + length <= windowStart + windowLength) {
+            return true;
+        }
+
+        buffer.clear();
+        int limit = (int) Math.min(WINDOW_SIZE, fileSize - position);
+        buffer.limit(limit);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        windowStart = position;
+        windowLength = buffer.position();
+        return windowLength >= length;
+    }
+
+    int u8(long position) throws IOException {
+        if (!ensure(position, 1)) {
+            return -1;
+        }
+        return bytes[(int) (position - windowStart)] & 0xFF;
+    }
+
+    int u16be(long position) throws IOException {
+        if (!ensure(position, 2)) {
+            return -1;
+        }
+        int offset = (int) (position - windowStart);
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    long u32be(long position) throws IOException {
+        if (!ensure(position, 4)) {
+            return -1;
+        }
+        int offset = (int) (position - windowStart);
+        return ((long) (bytes[offset] & 0xFF) << 24)
+                | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8)
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    long u32le(long position) throws IOException {
+        if (!ensure(position, 4)) {
+            return -1;
+        }
+        int offset = (int) (position - windowStart);
+        return (bytes[offset] & 0xFF)
+                | ((bytes[offset + 1] & 0xFF) << 8)
+                | ((bytes[offset + 2] & 0xFF) << 16)
+                | ((long) (bytes[offset + 3] & 0xFF) << 24);
+    }
+
+    int u16le(long position) throws IOException {
+        if (!ensure(position, 2)) {
+            return -1;
+        }
+        int offset = (int) (position - windowStart);
+        return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8);
+    }
+
+    long u64be(long position) throws IOException {
+        long high = u32be(position);
+        long low = u32be(position + 4);
+        if (high < 0 || low < 0) {
+            return -1;
+        }
+        return (high << 32) | low;
+    }
+
+    boolean matches(long position, String ascii) throws IOException {
+        if (!ensure(position, ascii.length())) {
+            return false;
+        }
+        int offset = (int) (position - windowStart);
+        for (int i = 0; i < ascii.length(); i++) {
+            if (bytes[offset + i] != (byte) ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes text, stopping at the first NUL. Text longer than the window is truncated.
+     */
+    String string(long position, int length, Charset charset) throws IOException {
+        length = (int) Math.min(length, Math.min(WINDOW_SIZE, fileSize - position));
+        if (length <= 0 || !ensure(position, length)) {
+            return "";
+        }
+        int offset = (int) (position - windowStart);
+        int end = offset;
+        int unitSize = charset.name().startsWith("UTF-16") ? 2 : 1;
+        while (end + unitSize <= offset + length) {
+            boolean terminator = bytes[end] == 0 && (unitSize == 1 || bytes[end + 1] == 0);
+            if (terminator) {
+                break;
+            }
+            end += unitSize;
+        }
+        return new String(bytes, offset, end - offset, charset).trim();
+    }
+}
@@ -0,0 +1,110 @@
+package com.mp3player.data.metadata;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Follows the MP4 atom tree: moov/mvhd for the duration and
+ * moov/udta/meta/ilst for the iTunes style tags. Large atoms such as mdat are
+ * skipped by their header size, so only a few small reads are needed.
+ */
+class M4aMetadataParser {
+    private static final String TITLE = "©nam";
+    private static final String ARTIST = "©ART";
+    private static final String ALBUM = "©alb";
+    private static final String ALBUM_ARTIST = "aART";
+
+    void parse(ChannelWindow window, AudioMetadata metadata) throws IOException {
+        long[] moov = findChild(window, 0, window.fileSize(), "moov");
+        if (moov == null) {
+            return;
+        }
+
+        long[] mvhd = findChild(window, moov[0], moov[1], "mvhd");
+        if (mvhd != null) {
+            readDuration(window, mvhd[0], metadata);
+        }
+
+        long[] udta = findChild(window, moov[0], moov[1], "udta");
+        long[] meta = udta != null ? findChild(window, udta[0], udta[1], "meta") : null;
+        if (meta == null) {
+            return;
+        }
+
+        // "meta" is normally a full atom with 4 bytes of version/flags before its children
+        long childrenStart = window.matches(meta[0] + 4, "hdlr") ? meta[0] : meta[0] + 4;
+        long[] ilst = findChild(window, childrenStart, meta[1], "ilst");
+        if (ilst != null) {
+            readItems(window, ilst[0], ilst[1], metadata);
+        }
+    }
+
+    private void readDuration(ChannelWindow window, long body, AudioMetadata metadata) throws IOException {
+        int version = window.u8(body);
+        long timescale;
+        long duration;
+        if (version == 1) {
+            timescale = window.u32be(body + 20);
+            duration = window.u64be(body + 24);
+        } else {
+            timescale = window.u32be(body + 12);
+            duration = window.u32be(body + 16);
+        }
+        if (timescale > 0 && duration > 0) {
+            metadata.setDurationMillis(duration * 1000L / timescale);
+        }
+    }
+
+    private void readItems(ChannelWindow window, long position, long end, AudioMetadata metadata) throws IOException {
+        String albumArtist = null;
+        while (position + 8 <= end) {
+            long size = window.u32be(position);
+            if (size < 8 || position + size > end) {
+                break;
+            }
+
+            long[] data = findChild(window, position + 8, position + size, "data");
+            if (data != null) {
+                // Skip the 4 byte type indicator and the 4 byte locale
+                long valueStart = data[0] + 8;
+                int length = (int) Math.min(data[1] - valueStart, ChannelWindow.WINDOW_SIZE);
+                if (window.matches(position + 4, TITLE)) {
+                    metadata.setTitleIfMissing(window.string(valueStart, length, StandardCharsets.UTF_8));
+                } else if (window.matches(position + 4, ARTIST)) {
+                    metadata.setArtistIfMissing(window.string(valueStart, length, StandardCharsets.UTF_8));
+                } else if (window.matches(position + 4, ALBUM)) {
+                    metadata.setAlbumIfMissing(window.string(valueStart, length, StandardCharsets.UTF_8));
+                } else if (window.matches(position + 4, ALBUM_ARTIST)) {
+                    albumArtist = window.string(valueStart, length, StandardCharsets.UTF_8);
+                }
+            }
+            position += size;
+        }
+        metadata.setArtistIfMissing(albumArtist);
+    }
+
+    /**
+     * Returns the {bodyStart, bodyEnd} range of the first child atom with the given type.
+     */
+    private long[] findChild(ChannelWindow window, long position, long end, String type) throws IOException {
+        while (position + 8 <= end) {
+            long size = window.u32be(position);
+            int headerSize = 8;
+            if (size == 1) {
+                size = window.u64be(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return null;
+            }
+
+            if (window.matches(position + 4, type)) {
+                return new long[]{position + headerSize, position + size};
+            }
+            position += size;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,252 @@
+package com.mp3player.data.metadata;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads ID3v2/ID3v1 tags and works out the duration from the first MPEG frame
+ * (Xing/Info or VBRI header when present, constant bitrate estimate otherwise).
+ */
+class Mp3MetadataParser {
+    private static final int ID3V2_HEADER_SIZE = 10;
+    private static final int ID3V1_TAG_SIZE = 128;
+    private static final int MAX_SYNC_SEARCH = 64 * 1024;
+
+    // Bitrates in kbps, indexed by [version row][layer][index]
+    private static final int[][] BITRATES_V1 = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},  // Layer I
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},     // Layer II
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}       // Layer III
+    };
+    private static final int[][] BITRATES_V2 = {
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},     // Layer I
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},          // Layer II
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}           // Layer III
+    };
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},   // MPEG 2.5
+            {0, 0, 0},              // reserved
+            {22050, 24000, 16000},  // MPEG 2
+            {44100, 48000, 32000}   // MPEG 1
+    };
+
+    private static final Charset UTF_16 = StandardCharsets.UTF_16;
+
+    void parse(ChannelWindow window, AudioMetadata metadata) throws IOException {
+        long audioStart = 0;
+        if (window.matches(0, "ID3")) {
+            audioStart = readId3v2(window, metadata);
+        }
+
+        long audioEnd = window.fileSize();
+        if (audioEnd >= ID3V1_TAG_SIZE && window.matches(audioEnd - ID3V1_TAG_SIZE, "TAG")) {
+            audioEnd -= ID3V1_TAG_SIZE;
+            readId3v1(window, audioEnd, metadata);
+        }
+
+        if (metadata.getDurationMillis() <= 0) {
+            metadata.setDurationMillis(readDuration(window, audioStart, audioEnd));
+        }
+    }
+
+    private long readId3v2(ChannelWindow window, AudioMetadata metadata) throws IOException {
+        int majorVersion = window.u8(3);
+        int flags = window.u8(5);
+        long tagSize = synchsafe(window, 6);
+        long tagEnd = ID3V2_HEADER_SIZE + tagSize;
+        long audioStart = tagEnd + ((flags & 0x10) != 0 ? 10 : 0);
+
+        if (majorVersion < 2 || majorVersion > 4 || tagSize <= 0) {
+            return audioStart;
+        }
+
+        long position = ID3V2_HEADER_SIZE;
+        if ((flags & 0x40) != 0 && majorVersion >= 3) {
+            // Extended header: v2.4 size includes itself, v2.3 does not
+            long extendedSize = majorVersion == 4 ? synchsafe(window, position) : window.u32be(position) + 4;
+            position += extendedSize;
+        }
+
+        boolean shortFrames = majorVersion == 2;
+        int headerSize = shortFrames ? 6 : 10;
+
+        while (position + headerSize <= tagEnd) {
+            if (window.u8(position) == 0) {
+                break; // padding
+            }
+
+            String frameId = window.string(position, shortFrames ? 3 : 4, StandardCharsets.ISO_8859_1);
+            long frameSize;
+            if (shortFrames) {
+                frameSize = ((long) window.u8(position + 3) << 16) | (window.u8(position + 4) << 8) | window.u8(position + 5);
+            } else if (majorVersion == 4) {
+                frameSize = synchsafe(window, position + 4);
+            } else {
+                frameSize = window.u32be(position + 4);
+            }
+
+            if (frameSize <= 0 || position + headerSize + frameSize > tagEnd) {
+                break;
+            }
+
+            long body = position + headerSize;
+            switch (frameId) {
+                case "TIT2":
+                case "TT2":
+                    metadata.setTitleIfMissing(readTextFrame(window, body, frameSize));
+                    break;
+                case "TPE1":
+                case "TP1":
+                    metadata.setArtistIfMissing(readTextFrame(window, body, frameSize));
+                    break;
+                case "TALB":
+                case "TAL":
+                    metadata.setAlbumIfMissing(readTextFrame(window, body, frameSize));
+                    break;
+                case "TLEN":
+                case "TLE":
+                    metadata.setDurationMillis(parseLong(readTextFrame(window, body, frameSize)));
+                    break;
+                default:
+                    break;
+            }
+
+            position = body + frameSize;
+        }
+
+        return audioStart;
+    }
+
+    private String readTextFrame(ChannelWindow window, long body, long frameSize) throws IOException {
+        if (frameSize < 2) {
+            return "";
+        }
+        int encoding = window.u8(body);
+        int length = (int) Math.min(frameSize - 1, ChannelWindow.WINDOW_SIZE);
+        switch (encoding) {
+            case 0:
+                return window.string(body + 1, length, StandardCharsets.ISO_8859_1);
+            case 1:
+                return window.string(body + 1, length, UTF_16);
+            case 2:
+                return window.string(body + 1, length, StandardCharsets.UTF_16BE);
+            case 3:
+                return window.string(body + 1, length, StandardCharsets.UTF_8);
+            default:
+                return "";
+        }
+    }
+
+    private void readId3v1(ChannelWindow window, long tagStart, AudioMetadata metadata) throws IOException {
+        metadata.setTitleIfMissing(window.string(tagStart + 3, 30, StandardCharsets.ISO_8859_1));
+        metadata.setArtistIfMissing(window.string(tagStart + 33, 30, StandardCharsets.ISO_8859_1));
+        metadata.setAlbumIfMissing(window.string(tagStart + 63, 30, StandardCharsets.ISO_8859_1));
+    }
+
+    private long readDuration(ChannelWindow window, long audioStart, long audioEnd) throws IOException {
+        long searchEnd = Math.min(audioEnd - 4, audioStart + MAX_SYNC_SEARCH);
+        for (long position = audioStart; position < searchEnd; position++) {
+            if (window.u8(position) != 0xFF) {
+                continue;
+            }
+            long header = window.u32be(position);
+            FrameHeader frame = FrameHeader.decode(header);
+            if (frame == null) {
+                continue;
+            }
+
+            long frames = readXingFrameCount(window, position, frame);
+            if (frames < 0) {
+                frames = readVbriFrameCount(window, position);
+            }
+            if (frames > 0) {
+                return frames * frame.samplesPerFrame * 1000L / frame.sampleRate;
+            }
+
+            // Constant bitrate: the remaining audio bytes divided by the byte rate
+            long audioBytes = audioEnd - position;
+            return audioBytes * 8L / frame.bitrateKbps;
+        }
+        return 0;
+    }
+
+    private long readXingFrameCount(ChannelWindow window, long frameStart, FrameHeader frame) throws IOException {
+        int sideInfoSize;
+        if (frame.versionId == 3) {
+            sideInfoSize = frame.mono ? 17 : 32;
+        } else {
+            sideInfoSize = frame.mono ? 9 : 17;
+        }
+        long tagPosition = frameStart + 4 + sideInfoSize;
+        if (!window.matches(tagPosition, "Xing") && !window.matches(tagPosition, "Info")) {
+            return -1;
+        }
+        long flags = window.u32be(tagPosition + 4);
+        if ((flags & 0x1) == 0) {
+            return -1;
+        }
+        return window.u32be(tagPosition + 8);
+    }
+
+    private long readVbriFrameCount(ChannelWindow window, long frameStart) throws IOException {
+        long tagPosition = frameStart + 4 + 32;
+        if (!window.matches(tagPosition, "VBRI")) {
+            return -1;
+        }
+        return window.u32be(tagPosition + 14);
+    }
+
+    private static long synchsafe(ChannelWindow window, long position) throws IOException {
+        return ((long) (window.u8(position) & 0x7F) << 21)
+                | ((window.u8(position + 1) & 0x7F) << 14)
+                | ((window.u8(position + 2) & 0x7F) << 7)
+                | (window.u8(position + 3) & 0x7F);
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class FrameHeader {
+        private int versionId;
+        private int sampleRate;
+        private int bitrateKbps;
+        private int samplesPerFrame;
+        private boolean mono;
+
+        static FrameHeader decode(long header) {
+            if ((header & 0xFFE00000L) != 0xFFE00000L) {
+                return null;
+            }
+            int versionId = (int) ((header >> 19) & 0x3);
+            int layerId = (int) ((header >> 17) & 0x3);
+            int bitrateIndex = (int) ((header >> 12) & 0xF);
+            int sampleRateIndex = (int) ((header >> 10) & 0x3);
+            int channelMode = (int) ((header >> 6) & 0x3);
+
+            if (versionId == 1 || layerId == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+                return null;
+            }
+
+            int layer = 4 - layerId; // 1, 2 or 3
+            FrameHeader frame = new FrameHeader();
+            frame.versionId = versionId;
+            frame.sampleRate = SAMPLE_RATES[versionId][sampleRateIndex];
+            frame.bitrateKbps = (versionId == 3 ? BITRATES_V1 : BITRATES_V2)[layer - 1][bitrateIndex];
+            frame.mono = channelMode == 3;
+            if (layer == 1) {
+                frame.samplesPerFrame = 384;
+            } else if (layer == 3 && versionId != 3) {
+                frame.samplesPerFrame = 576;
+            } else {
+                frame.samplesPerFrame = 1152;
+            }
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mp3player.data.metadata;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Walks RIFF chunks: "fmt " and "data" give the duration, LIST/INFO gives the tags.
+ */
+class WavMetadataParser {
+    private static final int RIFF_HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+
+    void parse(ChannelWindow window, AudioMetadata metadata) throws IOException {
+        if (!window.matches(0, "RIFF") || !window.matches(8, "WAVE")) {
+            return;
+        }
+
+        long byteRate = 0;
+        long dataSize = -1;
+        long position = RIFF_HEADER_SIZE;
+        long fileSize = window.fileSize();
+
+        while (position + CHUNK_HEADER_SIZE <= fileSize) {
+            long chunkSize = window.u32le(position + 4);
+            if (chunkSize < 0) {
+                break;
+            }
+            long body = position + CHUNK_HEADER_SIZE;
+
+            if (window.matches(position, "fmt ")) {
+                byteRate = window.u32le(body + 8);
+            } else if (window.matches(position, "data")) {
+                // Streams written on the fly may leave the size unset
+                dataSize = Math.min(chunkSize, fileSize - body);
+            } else if (window.matches(position, "LIST") && window.matches(body, "INFO")) {
+                readInfo(window, body + 4, body + chunkSize, metadata);
+            }
+
+            // Chunks are padded to an even number of bytes
+            position = body + chunkSize + (chunkSize & 1);
+        }
+
+        if (byteRate > 0 && dataSize > 0) {
+            metadata.setDurationMillis(dataSize * 1000L / byteRate);
+        }
+    }
+
+    private void readInfo(ChannelWindow window, long position, long end, AudioMetadata metadata) throws IOException {
+        while (position + CHUNK_HEADER_SIZE <= end) {
+            long size = window.u32le(position + 4);
+            if (size < 0) {
+                break;
+            }
+            long body = position + CHUNK_HEADER_SIZE;
+            int length = (int) Math.min(size, ChannelWindow.WINDOW_SIZE);
+
+            if (window.matches(position, "INAM")) {
+                metadata.setTitleIfMissing(window.string(body, length, StandardCharsets.UTF_8));
+            } else if (window.matches(position, "IART")) {
+                metadata.setArtistIfMissing(window.string(body, length, StandardCharsets.UTF_8));
+            } else if (window.matches(position, "IPRD")) {
+                metadata.setAlbumIfMissing(window.string(body, length, StandardCharsets.UTF_8));
+            }
+
+            position = body + size + (size & 1);
+        }
+    }
+}
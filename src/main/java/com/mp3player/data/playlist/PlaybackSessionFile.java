@@ -0,0 +1,99 @@
+package com.mp3player.data.playlist;
+
+import com.mp3player.data.library.AppDataDirectory;
+import com.mp3player.domain.entity.PlaybackSession;
+import com.mp3player.domain.entity.Song;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * Small file holding the last played song, kept apart from the playlist store
+ * so it can be read before the playlists are restored.
+ */
+public class PlaybackSessionFile {
+    private static final int MAGIC = 0x4D505053; // "MPPS"
+    private static final int VERSION = 1;
+
+    private final Path sessionFile;
+
+    public PlaybackSessionFile(Path sessionFile) {
+        this.sessionFile = sessionFile;
+    }
+
+    public static PlaybackSessionFile openDefault() {
+        return new PlaybackSessionFile(AppDataDirectory.resolve("session.dat"));
+    }
+
+    public PlaybackSession read() {
+        if (!Files.isRegularFile(sessionFile)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sessionFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String id = in.readUTF();
+            String title = in.readUTF();
+            String artist = in.readUTF();
+            String album = in.readUTF();
+            String filePath = in.readUTF();
+            long durationMillis = in.readLong();
+            boolean favorite = in.readBoolean();
+            long positionMillis = in.readLong();
+
+            Song song = new Song(id, title, artist, album, filePath, Duration.ofMillis(durationMillis));
+            song.setFavorite(favorite);
+            return new PlaybackSession(song, positionMillis);
+        } catch (IOException e) {
+            System.err.println("Error reading playback session: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(PlaybackSession session) {
+        try {
+            if (session == null || session.getSong() == null) {
+                Files.deleteIfExists(sessionFile);
+                return;
+            }
+
+            Files.createDirectories(sessionFile.getParent());
+            Path tempFile = sessionFile.resolveSibling(sessionFile.getFileName() + ".tmp");
+            Song song = session.getSong();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(song.getId());
+                out.writeUTF(nullToEmpty(song.getTitle()));
+                out.writeUTF(nullToEmpty(song.getArtist()));
+                out.writeUTF(nullToEmpty(song.getAlbum()));
+                out.writeUTF(nullToEmpty(song.getFilePath()));
+                out.writeLong(song.getDuration() != null ? song.getDuration().toMillis() : 0);
+                out.writeBoolean(song.isFavorite());
+                out.writeLong(session.getPositionMillis());
+            }
+
+            try {
+                Files.move(tempFile, sessionFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, sessionFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving playback session: " + e.getMessage());
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
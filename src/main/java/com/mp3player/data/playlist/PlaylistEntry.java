@@ -0,0 +1,42 @@
+package com.mp3player.data.playlist;
+
+import java.nio.file.Path;
+
+/**
+ * One track of a playlist file: its resolved location plus whatever title,
+ * artist and duration the playlist itself recorded (empty/0 when absent).
+ */
+public class PlaylistEntry {
+    private final Path path;
+    private final String title;
+    private final String artist;
+    private final long durationMillis;
+
+    public PlaylistEntry(Path path, String title, String artist, long durationMillis) {
+        this.path = path;
+        this.title = title;
+        this.artist = artist;
+        this.durationMillis = durationMillis;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,413 @@
+package com.mp3player.data.playlist;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads M3U/M3U8, PLS and XSPF playlists line by line (or event by event for
+ * XSPF) without loading the whole file. Entries are grouped into batches and
+ * each batch is checked against the file system in parallel, while parsing
+ * carries on. Batches are delivered in playlist order, and the first ones
+ * are small so playback can start before the file has been read to the end.
+ */
+public class PlaylistFileReader {
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    private static final int FIRST_BATCH_SIZE = 32;
+    private static final int MAX_BATCHES_IN_FLIGHT = 8;
+    private static final int CHUNK_SIZE = 16;
+
+    // File checks are I/O bound (network shares), so use many more threads than cores
+    private static final ExecutorService VALIDATION_POOL = Executors.newFixedThreadPool(32, runnable -> {
+        Thread thread = new Thread(runnable, "playlist-validator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int batchSize;
+    private volatile boolean cancelled;
+
+    public PlaylistFileReader() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    public PlaylistFileReader(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Parses the playlist and delivers the resolved entries in order. The
+     * resolver runs on worker threads; entries it maps to null (e.g. missing
+     * files) are left out.
+     */
+    public <T> void read(Path playlistFile, Function<PlaylistEntry, T> resolver, Consumer<List<T>> batchConsumer)
+            throws IOException {
+        Path baseDirectory = playlistFile.toAbsolutePath().getParent();
+        Pipeline<T> pipeline = new Pipeline<>(resolver, batchConsumer);
+
+        String name = playlistFile.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (InputStream in = Files.newInputStream(playlistFile)) {
+            if (name.endsWith(".xspf")) {
+                readXspf(in, baseDirectory, pipeline);
+            } else if (name.endsWith(".pls")) {
+                readPls(newReader(in), baseDirectory, pipeline);
+            } else {
+                readM3u(newReader(in), baseDirectory, pipeline);
+            }
+        } finally {
+            pipeline.finish();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void readM3u(BufferedReader reader, Path baseDirectory, Pipeline<?> pipeline) throws IOException {
+        String title = "";
+        String artist = "";
+        long durationMillis = 0;
+
+        String line;
+        boolean firstLine = true;
+        while (!cancelled && (line = reader.readLine()) != null) {
+            if (firstLine) {
+                line = stripBom(line);
+                firstLine = false;
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            if (line.charAt(0) == '#') {
+                if (line.startsWith("#EXTINF:")) {
+                    // #EXTINF:seconds[ attributes],Artist - Title, with -1 seconds when unknown
+                    int comma = line.indexOf(',', 8);
+                    durationMillis = Math.max(0, parseLeadingLong(line, 8, comma < 0 ? line.length() : comma) * 1000);
+                    String info = comma < 0 ? "" : line.substring(comma + 1).trim();
+                    int separator = info.indexOf(" - ");
+                    if (separator > 0) {
+                        artist = info.substring(0, separator).trim();
+                        title = info.substring(separator + 3).trim();
+                    } else {
+                        artist = "";
+                        title = info;
+                    }
+                }
+                continue;
+            }
+
+            Path path = resolveLocation(baseDirectory, line, false);
+            if (path != null) {
+                pipeline.add(new PlaylistEntry(path, title, artist, durationMillis));
+            }
+            title = "";
+            artist = "";
+            durationMillis = 0;
+        }
+    }
+
+    private void readPls(BufferedReader reader, Path baseDirectory, Pipeline<?> pipeline) throws IOException {
+        // Keys are FileN, TitleN and LengthN; an entry is complete once N changes
+        int currentNumber = -1;
+        String location = null;
+        String title = "";
+        long durationMillis = 0;
+
+        String line;
+        boolean firstLine = true;
+        while (!cancelled && (line = reader.readLine()) != null) {
+            if (firstLine) {
+                line = stripBom(line);
+                firstLine = false;
+            }
+            int equals = line.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+
+            int keyEnd = equals;
+            int numberStart = keyEnd;
+            while (numberStart > 0 && Character.isDigit(line.charAt(numberStart - 1))) {
+                numberStart--;
+            }
+            if (numberStart == keyEnd) {
+                continue; // [playlist], NumberOfEntries=, Version=
+            }
+            int number;
+            try {
+                number = Integer.parseInt(line, numberStart, keyEnd, 10);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            String value = line.substring(equals + 1).trim();
+
+            if (number != currentNumber) {
+                addPlsEntry(pipeline, baseDirectory, location, title, durationMillis);
+                currentNumber = number;
+                location = null;
+                title = "";
+                durationMillis = 0;
+            }
+
+            if (line.regionMatches(true, 0, "File", 0, 4) && numberStart == 4) {
+                location = value;
+            } else if (line.regionMatches(true, 0, "Title", 0, 5) && numberStart == 5) {
+                title = value;
+            } else if (line.regionMatches(true, 0, "Length", 0, 6) && numberStart == 6) {
+                durationMillis = Math.max(0, parseLeadingLong(value, 0, value.length())) * 1000;
+            }
+        }
+        addPlsEntry(pipeline, baseDirectory, location, title, durationMillis);
+    }
+
+    private void addPlsEntry(Pipeline<?> pipeline, Path baseDirectory, String location, String title,
+                             long durationMillis) {
+        if (location == null || cancelled) {
+            return;
+        }
+        Path path = resolveLocation(baseDirectory, location, false);
+        if (path != null) {
+            // PLS titles usually read "Artist - Title"
+            int separator = title.indexOf(" - ");
+            if (separator > 0) {
+                pipeline.add(new PlaylistEntry(path, title.substring(separator + 3).trim(),
+                        title.substring(0, separator).trim(), durationMillis));
+            } else {
+                pipeline.add(new PlaylistEntry(path, title, "", durationMillis));
+            }
+        }
+    }
+
+    private void readXspf(InputStream in, Path baseDirectory, Pipeline<?> pipeline) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in, StandardCharsets.UTF_8.name());
+            boolean inTrack = false;
+            String location = null;
+            String title = "";
+            String artist = "";
+            long durationMillis = 0;
+
+            while (!cancelled && xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if ("track".equals(element)) {
+                        inTrack = true;
+                        location = null;
+                        title = "";
+                        artist = "";
+                        durationMillis = 0;
+                    } else if (inTrack) {
+                        switch (element) {
+                            case "location":
+                                if (location == null) {
+                                    location = xml.getElementText().trim();
+                                }
+                                break;
+                            case "title":
+                                title = xml.getElementText().trim();
+                                break;
+                            case "creator":
+                                artist = xml.getElementText().trim();
+                                break;
+                            case "duration":
+                                String text = xml.getElementText().trim();
+                                durationMillis = Math.max(0, parseLeadingLong(text, 0, text.length()));
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "track".equals(xml.getLocalName())) {
+                    inTrack = false;
+                    Path path = location != null ? resolveLocation(baseDirectory, location, true) : null;
+                    if (path != null) {
+                        pipeline.add(new PlaylistEntry(path, title, artist, durationMillis));
+                    }
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid XSPF playlist: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Turns a playlist location (absolute, relative or file: URI) into a path.
+     * Plain locations are taken literally; with uriReference set (XSPF, where
+     * locations are URIs) relative ones are percent-decoded first. Returns null
+     * for locations that are not local files, such as stream URLs.
+     */
+    static Path resolveLocation(Path baseDirectory, String location, boolean uriReference) {
+        try {
+            if (location.regionMatches(true, 0, "file:", 0, 5)) {
+                return Paths.get(URI.create(location.replace(" ", "%20")));
+            }
+            if (location.indexOf("://") > 0) {
+                return null;
+            }
+            if (uriReference && location.indexOf('%') >= 0) {
+                // Relative URI: decode escapes such as %20
+                location = URI.create(location.replace(" ", "%20")).getPath();
+            }
+            Path path = Paths.get(location.replace('\\', '/'));
+            if (path.isAbsolute() || baseDirectory == null) {
+                return path;
+            }
+            return baseDirectory.resolve(path).normalize();
+        } catch (IllegalArgumentException e) { // includes InvalidPathException
+            return null;
+        }
+    }
+
+    // Leading integer of text[start, end), ignoring anything after it; 0 if there is none
+    private static long parseLeadingLong(String text, int start, int end) {
+        int i = start;
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        boolean negative = i < end && text.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static BufferedReader newReader(InputStream in) {
+        // Decode as UTF-8 (M3U8 and modern M3U); bad bytes become U+FFFD instead of failing
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return new BufferedReader(new InputStreamReader(in, decoder), 1 << 16);
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    /**
+     * Collects parsed entries into batches, resolves each batch in parallel
+     * and hands finished batches to the consumer in order.
+     */
+    private final class Pipeline<T> {
+        private final Function<PlaylistEntry, T> resolver;
+        private final Consumer<List<T>> batchConsumer;
+        private final ArrayDeque<CompletableFuture<List<T>>> inFlight = new ArrayDeque<>();
+        private List<PlaylistEntry> pending;
+        private int currentBatchSize = Math.min(FIRST_BATCH_SIZE, batchSize);
+
+        Pipeline(Function<PlaylistEntry, T> resolver, Consumer<List<T>> batchConsumer) {
+            this.resolver = resolver;
+            this.batchConsumer = batchConsumer;
+            this.pending = new ArrayList<>(currentBatchSize);
+        }
+
+        void add(PlaylistEntry entry) {
+            pending.add(entry);
+            if (pending.size() >= currentBatchSize) {
+                submit();
+                deliver(false);
+            }
+        }
+
+        void finish() {
+            if (!pending.isEmpty() && !cancelled) {
+                submit();
+            }
+            deliver(true);
+        }
+
+        private void submit() {
+            inFlight.add(resolveBatch(pending));
+            currentBatchSize = Math.min(batchSize, currentBatchSize * 2);
+            pending = new ArrayList<>(currentBatchSize);
+        }
+
+        // Delivers finished batches from the head; waits when too many are pending or at the end
+        private void deliver(boolean all) {
+            while (!inFlight.isEmpty()) {
+                CompletableFuture<List<T>> head = inFlight.peek();
+                if (!all && !head.isDone() && inFlight.size() < MAX_BATCHES_IN_FLIGHT) {
+                    return;
+                }
+                inFlight.poll();
+                List<T> batch;
+                try {
+                    batch = head.join();
+                } catch (CompletionException e) {
+                    System.err.println("Error checking playlist entries: " + e.getCause().getMessage());
+                    continue;
+                }
+                if (!cancelled && !batch.isEmpty()) {
+                    batchConsumer.accept(batch);
+                }
+            }
+        }
+
+        private CompletableFuture<List<T>> resolveBatch(List<PlaylistEntry> entries) {
+            Object[] results = new Object[entries.size()];
+            CompletableFuture<?>[] chunks = new CompletableFuture<?>[(entries.size() + CHUNK_SIZE - 1) / CHUNK_SIZE];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                int start = chunk * CHUNK_SIZE;
+                int end = Math.min(entries.size(), start + CHUNK_SIZE);
+                chunks[chunk] = CompletableFuture.runAsync(() -> {
+                    for (int i = start; i < end && !cancelled; i++) {
+                        results[i] = resolver.apply(entries.get(i));
+                    }
+                }, VALIDATION_POOL);
+            }
+
+            return CompletableFuture.allOf(chunks).thenApply(ignored -> {
+                List<T> resolved = new ArrayList<>(results.length);
+                for (Object result : results) {
+                    if (result != null) {
+                        @SuppressWarnings("unchecked")
+                        T value = (T) result;
+                        resolved.add(value);
+                    }
+                }
+                return resolved;
+            });
+        }
+    }
+}
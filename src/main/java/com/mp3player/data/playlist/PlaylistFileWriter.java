@@ -0,0 +1,191 @@
+package com.mp3player.data.playlist;
+
+import com.mp3player.domain.entity.Song;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes extended M3U playlists in UTF-8. Text is encoded straight into a
+ * reusable byte buffer that is written out through a file channel, so no
+ * per-entry strings are built. The playlist goes to a temporary file next to
+ * the target, is forced to disk and then moved over the target, so a crash
+ * leaves either the old playlist or the new one, never half of it.
+ */
+public class PlaylistFileWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE / 4);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel;
+
+    /**
+     * Writes the songs to the playlist file. With relative paths, songs are
+     * written relative to the playlist's directory where possible, so the
+     * playlist keeps working when the whole folder is moved.
+     */
+    public synchronized void write(List<Song> songs, Path playlistFile, boolean relativePaths) throws IOException {
+        Path target = playlistFile.toAbsolutePath();
+        Path directory = target.getParent();
+        Files.createDirectories(directory);
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+
+        encoder.reset();
+        chars.clear();
+        bytes.clear();
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = out;
+            append("#EXTM3U\n");
+            for (Song song : songs) {
+                // #EXTINF:seconds,Artist - Title
+                append("#EXTINF:");
+                long millis = song.getDuration() != null ? song.getDuration().toMillis() : 0;
+                appendNumber(millis > 0 ? (millis + 500) / 1000 : -1);
+                append(',');
+                appendField(song.getArtist());
+                append(" - ");
+                appendField(song.getTitle());
+                append('\n');
+
+                appendField(relativePaths ? relativize(directory, song.getFilePath()) : song.getFilePath());
+                append('\n');
+            }
+            finish();
+            out.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        } finally {
+            channel = null;
+        }
+
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static String relativize(Path directory, String filePath) {
+        try {
+            Path path = Paths.get(filePath);
+            if (!path.isAbsolute()) {
+                return filePath;
+            }
+            return directory.relativize(path).toString();
+        } catch (IllegalArgumentException e) { // includes InvalidPathException
+            return filePath; // different drive or root
+        }
+    }
+
+    // Field text on one line: line breaks inside titles would start a new entry
+    private void appendField(String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                append(text, start, i);
+                append(' ');
+                start = i + 1;
+            }
+        }
+        append(text, start, length);
+    }
+
+    private void append(String text) throws IOException {
+        append(text, 0, text.length());
+    }
+
+    private void append(String text, int start, int end) throws IOException {
+        while (start < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int count = Math.min(end - start, chars.remaining());
+            text.getChars(start, start + count, chars.array(), chars.arrayOffset() + chars.position());
+            chars.position(chars.position() + count);
+            start += count;
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }
+
+    private void appendNumber(long value) throws IOException {
+        if (chars.remaining() < 20) {
+            encode(false);
+        }
+        if (value < 0) {
+            chars.put('-');
+            value = -value;
+        }
+        int digitsStart = chars.position();
+        do {
+            chars.put((char) ('0' + value % 10));
+            value /= 10;
+        } while (value > 0);
+
+        // Digits went in least significant first
+        char[] array = chars.array();
+        for (int i = chars.arrayOffset() + digitsStart, j = chars.arrayOffset() + chars.position() - 1; i < j; i++, j--) {
+            char tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        // An unpaired high surrogate at the end stays for the next round
+        chars.compact();
+    }
+
+    private void finish() throws IOException {
+        encode(true);
+        while (encoder.flush(bytes).isOverflow()) {
+            drain();
+        }
+        drain();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -0,0 +1,667 @@
+package com.mp3player.data.playlist;
+
+import com.mp3player.data.library.AppDataDirectory;
+import com.mp3player.domain.entity.PlaylistChange;
+import com.mp3player.domain.entity.PlaylistEntity;
+import com.mp3player.domain.entity.PlaylistManager;
+import com.mp3player.domain.entity.Song;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the playlists, favorites and play modes between runs. The full state
+ * is written as a snapshot in which every distinct string (titles, artists,
+ * folders, file names) is stored once and referred to by index, and each
+ * playlist is a list of indexes into one shared song table. Snapshots are
+ * memory-mapped for loading. Edits made since the last snapshot are appended
+ * to a journal as checksummed records and replayed on load; when the journal
+ * outgrows a quarter of the snapshot, the state is written out as a new
+ * snapshot and the journal starts over. Callers only encode the record and
+ * queue it: writes and compactions run in order on one background thread,
+ * compacting from a copy of the state taken when it was queued.
+ */
+public class PlaylistStore {
+    private static final int SNAPSHOT_MAGIC = 0x4D50504C; // "MPPL"
+    private static final int JOURNAL_MAGIC = 0x4D50504A; // "MPPJ"
+    private static final int VERSION = 1;
+    private static final int JOURNAL_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long EXIT_FLUSH_SECONDS = 5;
+
+    // Songs are stored as string indexes for id, title, artist, album, folder
+    // and file name, so songs in one folder share the folder string
+    private static final int SONG_FIELDS = 6;
+    private static final int FLAG_SHUFFLE = 1;
+    private static final int FLAG_REPEAT = 2;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+
+    // File state, touched by load() and the writer thread; guarded by this
+    // The journal only applies to the snapshot with the same generation
+    private long generation;
+    private volatile long snapshotSize;
+    private FileChannel journal;
+    private long journalSize;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "playlist-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Record encoding and the journal size as queued so far; guarded by encodeLock, never held for I/O
+    private final Object encodeLock = new Object();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private boolean journalOpen;
+    private long queuedJournalSize;
+    // Set while a compaction is queued, so a writer that falls behind is not handed more
+    private boolean compactionQueued;
+
+    public PlaylistStore(Path snapshotFile, Path journalFile) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushOnExit, "playlist-journal-flush"));
+    }
+
+    public static PlaylistStore openDefault() {
+        return new PlaylistStore(AppDataDirectory.resolve("playlists.db"), AppDataDirectory.resolve("playlists.journal"));
+    }
+
+    /**
+     * Restores the saved state, or a fresh manager with the default playlist
+     * when nothing was saved yet. Opens the journal for the following edits.
+     */
+    public synchronized PlaylistManager load() {
+        Map<String, Song> songsById = new HashMap<>();
+        PlaylistManager manager = null;
+        try {
+            manager = readSnapshot(songsById);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading playlists: " + e.getMessage());
+        }
+
+        try {
+            if (manager == null) {
+                manager = new PlaylistManager();
+                compact(SavedState.of(manager));
+            } else {
+                long journalEnd = replayJournal(manager, songsById);
+                if (journalEnd < 0) {
+                    startJournal();
+                } else {
+                    openJournal(journalEnd);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error opening playlist journal: " + e.getMessage());
+        }
+
+        synchronized (encodeLock) {
+            journalOpen = journal != null;
+            queuedJournalSize = journalSize;
+        }
+        return manager;
+    }
+
+    /**
+     * Queues the change for the journal. The manager must already reflect it,
+     * since it is copied and written out in full when the journal gets too
+     * long. Only encodes the record on the calling thread.
+     */
+    public void append(PlaylistChange change, PlaylistManager state) {
+        synchronized (encodeLock) {
+            if (!journalOpen) {
+                return;
+            }
+
+            ByteBuffer record;
+            try {
+                recordBytes.reset();
+                writeChange(recordOut, change);
+                recordOut.flush();
+                byte[] payload = recordBytes.toByteArray();
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+
+                record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+                record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            } catch (IOException e) {
+                System.err.println("Error writing playlist journal: " + e.getMessage());
+                return;
+            }
+
+            // Queued under the lock so records reach the writer in the order they were made
+            writer.execute(() -> writeRecord(record));
+            queuedJournalSize += record.limit();
+            if (!compactionQueued && queuedJournalSize > Math.max(MIN_COMPACTION_BYTES, snapshotSize / 4)) {
+                SavedState saved = SavedState.of(state);
+                writer.execute(() -> compactQuietly(saved));
+                compactionQueued = true;
+                queuedJournalSize = JOURNAL_HEADER_SIZE;
+            }
+        }
+    }
+
+    private synchronized void writeRecord(ByteBuffer record) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            journalSize += record.limit();
+        } catch (IOException e) {
+            System.err.println("Error writing playlist journal: " + e.getMessage());
+        }
+    }
+
+    private synchronized void compactQuietly(SavedState saved) {
+        try {
+            compact(saved);
+        } catch (IOException e) {
+            // The current journal stays in use and still applies to the current snapshot
+            System.err.println("Error writing playlist snapshot: " + e.getMessage());
+        }
+        synchronized (encodeLock) {
+            compactionQueued = false;
+        }
+    }
+
+    // Lets the writer finish what is queued before the JVM exits
+    private void flushOnExit() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(EXIT_FLUSH_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Error flushing playlist journal: timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        close();
+    }
+
+    public synchronized void close() {
+        if (journal != null) {
+            try {
+                journal.force(false);
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Error closing playlist journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    private PlaylistManager readSnapshot(Map<String, Song> songsById) throws IOException {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < 16 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != VERSION) {
+                // Unknown layout: start over
+                return null;
+            }
+            long snapshotGeneration = buffer.getLong();
+
+            int stringCount = buffer.getInt();
+            String[] strings = new String[stringCount];
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < stringCount; i++) {
+                int length = buffer.getInt();
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                buffer.get(scratch, 0, length);
+                strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int songCount = buffer.getInt();
+            Song[] songs = new Song[songCount];
+            for (int i = 0; i < songCount; i++) {
+                String id = strings[buffer.getInt()];
+                String title = strings[buffer.getInt()];
+                String artist = strings[buffer.getInt()];
+                String album = strings[buffer.getInt()];
+                String folder = strings[buffer.getInt()];
+                String fileName = strings[buffer.getInt()];
+                long durationMillis = buffer.getLong();
+                boolean favorite = buffer.get() != 0;
+
+                Song song = new Song(id, title, artist, album, folder.concat(fileName), Duration.ofMillis(durationMillis));
+                song.setFavorite(favorite);
+                songs[i] = song;
+                songsById.put(id, song);
+            }
+
+            int playlistCount = buffer.getInt();
+            List<PlaylistEntity> playlists = new ArrayList<>(playlistCount);
+            for (int i = 0; i < playlistCount; i++) {
+                String id = strings[buffer.getInt()];
+                String name = strings[buffer.getInt()];
+                int entryCount = buffer.getInt();
+                List<Song> entries = new ArrayList<>(entryCount);
+                for (int j = 0; j < entryCount; j++) {
+                    entries.add(songs[buffer.getInt()]);
+                }
+                playlists.add(PlaylistEntity.restore(id, name, entries));
+            }
+
+            int currentIndex = buffer.getInt();
+            int flags = buffer.get();
+            PlaylistManager manager = new PlaylistManager(playlists,
+                    currentIndex >= 0 && currentIndex < playlists.size() ? playlists.get(currentIndex) : null);
+            manager.setShuffle((flags & FLAG_SHUFFLE) != 0);
+            manager.setRepeat((flags & FLAG_REPEAT) != 0);
+
+            generation = snapshotGeneration;
+            snapshotSize = size;
+            return manager;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated playlist snapshot", e);
+        }
+    }
+
+    // Replays the journal onto the manager, returning the end of the last intact record or -1
+    private long replayJournal(PlaylistManager manager, Map<String, Song> songsById) throws IOException {
+        if (!Files.isRegularFile(journalFile)) {
+            return -1;
+        }
+
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < JOURNAL_HEADER_SIZE) {
+                return -1;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != JOURNAL_MAGIC || buffer.getInt() != VERSION || buffer.getLong() != generation) {
+                // Left over from before the last snapshot, which already contains it
+                return -1;
+            }
+
+            long validEnd = buffer.position();
+            byte[] payload = new byte[256];
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break; // torn write at the end
+                }
+                if (length > payload.length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                buffer.get(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                applyChange(manager, songsById, new DataInputStream(new ByteArrayInputStream(payload, 0, length)));
+                validEnd = buffer.position();
+            }
+            return validEnd;
+        }
+    }
+
+    // Record types are stored by ordinal, so new types go at the end of PlaylistChange.Type
+    private void writeChange(DataOutputStream out, PlaylistChange change) throws IOException {
+        out.writeByte(change.getType().ordinal());
+        switch (change.getType()) {
+            case CREATE_PLAYLIST:
+            case RENAME_PLAYLIST:
+                out.writeUTF(change.getPlaylistId());
+                out.writeUTF(nullToEmpty(change.getName()));
+                break;
+            case DELETE_PLAYLIST:
+            case SET_CURRENT_PLAYLIST:
+                out.writeUTF(change.getPlaylistId());
+                break;
+            case ADD_SONGS:
+                out.writeUTF(change.getPlaylistId());
+                out.writeInt(change.getSongs().size());
+                for (Song song : change.getSongs()) {
+                    out.writeUTF(song.getId());
+                    out.writeUTF(nullToEmpty(song.getTitle()));
+                    out.writeUTF(nullToEmpty(song.getArtist()));
+                    out.writeUTF(nullToEmpty(song.getAlbum()));
+                    out.writeUTF(nullToEmpty(song.getFilePath()));
+                    out.writeLong(song.getDuration() != null ? song.getDuration().toMillis() : 0);
+                    out.writeBoolean(song.isFavorite());
+                }
+                break;
+            case REMOVE_SONG:
+                out.writeUTF(change.getPlaylistId());
+                out.writeUTF(change.getSongId());
+                break;
+            case SET_FAVORITE:
+                out.writeUTF(change.getSongId());
+                out.writeBoolean(change.isEnabled());
+                break;
+            case SET_SHUFFLE:
+            case SET_REPEAT:
+                out.writeBoolean(change.isEnabled());
+                break;
+            case RELOCATE_SONGS:
+                out.writeInt(change.getSongs().size());
+                for (Song song : change.getSongs()) {
+                    out.writeUTF(song.getId());
+                    out.writeUTF(nullToEmpty(song.getFilePath()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void applyChange(PlaylistManager manager, Map<String, Song> songsById, DataInputStream in)
+            throws IOException {
+        int ordinal = in.readUnsignedByte();
+        PlaylistChange.Type[] types = PlaylistChange.Type.values();
+        if (ordinal >= types.length) {
+            return;
+        }
+
+        switch (types[ordinal]) {
+            case CREATE_PLAYLIST: {
+                String id = in.readUTF();
+                String name = in.readUTF();
+                if (manager.getPlaylistById(id).isEmpty()) {
+                    manager.addPlaylist(PlaylistEntity.restore(id, name, Collections.emptyList()));
+                }
+                break;
+            }
+            case RENAME_PLAYLIST: {
+                String id = in.readUTF();
+                String name = in.readUTF();
+                manager.getPlaylistById(id).ifPresent(playlist -> manager.renamePlaylist(playlist, name));
+                break;
+            }
+            case DELETE_PLAYLIST:
+                manager.getPlaylistById(in.readUTF()).ifPresent(manager::deletePlaylist);
+                break;
+            case SET_CURRENT_PLAYLIST:
+                manager.getPlaylistById(in.readUTF()).ifPresent(manager::setCurrentPlaylist);
+                break;
+            case ADD_SONGS: {
+                String id = in.readUTF();
+                int count = in.readInt();
+                List<Song> songs = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String songId = in.readUTF();
+                    String title = in.readUTF();
+                    String artist = in.readUTF();
+                    String album = in.readUTF();
+                    String filePath = in.readUTF();
+                    long durationMillis = in.readLong();
+                    boolean favorite = in.readBoolean();
+
+                    // One instance per song id, so favorites are shared between playlists
+                    Song song = songsById.get(songId);
+                    if (song == null) {
+                        song = new Song(songId, title, artist, album, filePath, Duration.ofMillis(durationMillis));
+                        song.setFavorite(favorite);
+                        songsById.put(songId, song);
+                    }
+                    songs.add(song);
+                }
+                manager.getPlaylistById(id).ifPresent(playlist -> playlist.addAll(songs));
+                break;
+            }
+            case REMOVE_SONG: {
+                String id = in.readUTF();
+                Song song = songsById.get(in.readUTF());
+                if (song != null) {
+                    manager.getPlaylistById(id).ifPresent(playlist -> playlist.removeSong(song));
+                }
+                break;
+            }
+            case SET_FAVORITE: {
+                Song song = songsById.get(in.readUTF());
+                boolean favorite = in.readBoolean();
+                if (song != null) {
+                    song.setFavorite(favorite);
+                }
+                break;
+            }
+            case SET_SHUFFLE:
+                manager.setShuffle(in.readBoolean());
+                break;
+            case SET_REPEAT:
+                manager.setRepeat(in.readBoolean());
+                break;
+            case RELOCATE_SONGS: {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Song song = songsById.get(in.readUTF());
+                    String filePath = in.readUTF();
+                    if (song != null) {
+                        Song moved = new Song(song.getId(), song.getTitle(), song.getArtist(), song.getAlbum(),
+                                filePath, song.getDuration());
+                        moved.setFavorite(song.isFavorite());
+                        manager.relocateSong(moved);
+                        songsById.put(moved.getId(), moved);
+                    }
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void compact(SavedState saved) throws IOException {
+        long nextGeneration = generation + 1;
+        Files.createDirectories(snapshotFile.getParent());
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            writeSnapshot(out, saved, nextGeneration);
+            out.flush();
+            channel.force(false);
+        }
+        moveIntoPlace(tempFile, snapshotFile);
+
+        // A crash before the new journal is in place leaves the old one, which
+        // no longer matches the snapshot generation and is ignored
+        generation = nextGeneration;
+        snapshotSize = Files.size(snapshotFile);
+        startJournal();
+    }
+
+    private void writeSnapshot(DataOutputStream out, SavedState saved, long snapshotGeneration)
+            throws IOException {
+        int playlistCount = saved.ids.size();
+
+        // Collect the distinct songs and strings first, they are written before the playlists
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> songIndexes = new HashMap<>();
+        List<Song> songs = new ArrayList<>();
+        int[] songFields = new int[SONG_FIELDS * 1024];
+        for (int p = 0; p < playlistCount; p++) {
+            intern(saved.ids.get(p), stringIndexes, strings);
+            intern(saved.names.get(p), stringIndexes, strings);
+            for (Song song : saved.songs.get(p)) {
+                if (songIndexes.get(song.getId()) != null) {
+                    continue;
+                }
+                songIndexes.put(song.getId(), songs.size());
+                int base = songs.size() * SONG_FIELDS;
+                if (base + SONG_FIELDS > songFields.length) {
+                    songFields = Arrays.copyOf(songFields, songFields.length * 2);
+                }
+                String filePath = nullToEmpty(song.getFilePath());
+                int split = Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\')) + 1;
+                songFields[base] = intern(song.getId(), stringIndexes, strings);
+                songFields[base + 1] = intern(song.getTitle(), stringIndexes, strings);
+                songFields[base + 2] = intern(song.getArtist(), stringIndexes, strings);
+                songFields[base + 3] = intern(song.getAlbum(), stringIndexes, strings);
+                songFields[base + 4] = intern(filePath.substring(0, split), stringIndexes, strings);
+                songFields[base + 5] = intern(filePath.substring(split), stringIndexes, strings);
+                songs.add(song);
+            }
+        }
+
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshotGeneration);
+
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        out.writeInt(songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            // id, title, artist, album, folder, file name
+            for (int field = 0; field < SONG_FIELDS; field++) {
+                out.writeInt(songFields[i * SONG_FIELDS + field]);
+            }
+            // Favorites are read live: a later change is also journaled after this snapshot
+            out.writeLong(song.getDuration() != null ? song.getDuration().toMillis() : 0);
+            out.writeByte(song.isFavorite() ? 1 : 0);
+        }
+
+        out.writeInt(playlistCount);
+        for (int p = 0; p < playlistCount; p++) {
+            out.writeInt(stringIndexes.get(saved.ids.get(p)));
+            out.writeInt(stringIndexes.get(nullToEmpty(saved.names.get(p))));
+            List<Song> entries = saved.songs.get(p);
+            out.writeInt(entries.size());
+            for (Song song : entries) {
+                out.writeInt(songIndexes.get(song.getId()));
+            }
+        }
+
+        out.writeInt(saved.currentIndex);
+        out.writeByte(saved.flags);
+    }
+
+    private static int intern(String value, Map<String, Integer> indexes, List<String> strings) {
+        String key = nullToEmpty(value);
+        Integer index = indexes.putIfAbsent(key, strings.size());
+        if (index == null) {
+            strings.add(key);
+            return strings.size() - 1;
+        }
+        return index;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private void startJournal() throws IOException {
+        close();
+        Files.createDirectories(journalFile.getParent());
+        Path tempFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC).putInt(VERSION).putLong(generation).flip();
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(false);
+        }
+        moveIntoPlace(tempFile, journalFile);
+        openJournal(JOURNAL_HEADER_SIZE);
+    }
+
+    private void openJournal(long end) throws IOException {
+        close();
+        journal = FileChannel.open(journalFile, StandardOpenOption.WRITE);
+        // Drops a partly written record left by a crash
+        journal.truncate(end);
+        journal.position(end);
+        journalSize = end;
+    }
+
+    /**
+     * The playlists as of one change, copied on the thread that edits them so
+     * the writer can snapshot them while editing goes on. The song lists are
+     * the playlists' cached immutable copies.
+     */
+    private static final class SavedState {
+        private final List<String> ids;
+        private final List<String> names;
+        private final List<List<Song>> songs;
+        private final int currentIndex;
+        private final int flags;
+
+        private SavedState(List<String> ids, List<String> names, List<List<Song>> songs, int currentIndex,
+                           int flags) {
+            this.ids = ids;
+            this.names = names;
+            this.songs = songs;
+            this.currentIndex = currentIndex;
+            this.flags = flags;
+        }
+
+        static SavedState of(PlaylistManager manager) {
+            List<PlaylistEntity> playlists = manager.getAllPlaylists();
+            List<String> ids = new ArrayList<>(playlists.size());
+            List<String> names = new ArrayList<>(playlists.size());
+            List<List<Song>> songs = new ArrayList<>(playlists.size());
+            for (PlaylistEntity playlist : playlists) {
+                ids.add(playlist.getId());
+                names.add(playlist.getName());
+                songs.add(playlist.getSongs());
+            }
+            int flags = (manager.isShuffle() ? FLAG_SHUFFLE : 0) | (manager.isRepeat() ? FLAG_REPEAT : 0);
+            return new SavedState(ids, names, songs, playlists.indexOf(manager.getCurrentPlaylist()), flags);
+        }
+    }
+
+    private static void moveIntoPlace(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.mp3player.data.repository;
+
+import com.mp3player.data.audio.AudioDecoderRegistry;
+import com.mp3player.data.audio.LoudnessMeter;
+import com.mp3player.data.library.LoudnessIndex;
+import com.mp3player.domain.entity.Loudness;
+import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.repository.LoudnessRepository;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loudness measured on one low priority thread per core and kept in the
+ * {@link LoudnessIndex}. Files already measured at their current size and
+ * modification time are skipped; the index is saved each time the queue
+ * drains, along with the throughput of that run. The index is read on the
+ * analyzer threads, and lookups made before it has loaded find nothing
+ * rather than wait for the disk.
+ */
+public class FileLoudnessRepository implements LoudnessRepository {
+    private final LoudnessIndex index;
+    private final AudioDecoderRegistry decoders;
+    private final ThreadPoolExecutor analyzerPool;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    // Throughput, counted over the time at least one track was being analyzed
+    private final Object statsLock = new Object();
+    private int activeTasks;
+    private long busySince;
+    private long busyNanos;
+    private long tracksAnalyzed;
+    private long runTracks;
+
+    public FileLoudnessRepository() {
+        this(LoudnessIndex.openDefault(), AudioDecoderRegistry.createDefault());
+    }
+
+    public FileLoudnessRepository(LoudnessIndex index, AudioDecoderRegistry decoders) {
+        this.index = index;
+        this.decoders = decoders;
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        this.analyzerPool = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "loudness-analyzer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        analyzerPool.allowCoreThreadTimeOut(true);
+        analyzerPool.execute(index::load);
+    }
+
+    @Override
+    public Loudness getTrackLoudness(Song song) {
+        return index.isLoaded() ? index.get(song.getFilePath()) : null;
+    }
+
+    @Override
+    public Loudness getAlbumLoudness(Song song) {
+        return index.isLoaded() ? index.getAlbum(song.getFilePath()) : null;
+    }
+
+    @Override
+    public void analyze(List<Song> songs) {
+        for (Song song : songs) {
+            String path = song.getFilePath();
+            if (queued.add(path)) {
+                String album = song.getAlbum() == null || song.getAlbum().isEmpty()
+                        ? "" : song.getAlbum() + "\n" + Paths.get(path).getParent();
+                analyzerPool.execute(() -> {
+                    try {
+                        analyzeFile(path, album);
+                    } finally {
+                        queued.remove(path);
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public double getTracksPerMinute() {
+        synchronized (statsLock) {
+            long nanos = busyNanos + (activeTasks > 0 ? System.nanoTime() - busySince : 0);
+            return nanos > 0 ? tracksAnalyzed * 60e9 / nanos : 0.0;
+        }
+    }
+
+    private void analyzeFile(String path, String album) {
+        taskStarted();
+        boolean measured = false;
+        try {
+            measured = measure(path, album);
+        } finally {
+            taskFinished(measured);
+        }
+    }
+
+    private boolean measure(String path, String album) {
+        index.load();
+        Path file = Paths.get(path);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return false; // file is gone
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (index.lookup(path, size, lastModified) != null) {
+            return false;
+        }
+
+        try (AudioInputStream in = decoders.open(file)) {
+            index.put(path, size, lastModified, album, LoudnessMeter.measure(in));
+            return true;
+        } catch (UnsupportedAudioFileException e) {
+            return false; // no decoder for this format, e.g. MP3 without a Java Sound provider
+        } catch (IOException e) {
+            System.err.println("Error analyzing loudness: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void taskStarted() {
+        synchronized (statsLock) {
+            if (activeTasks++ == 0) {
+                busySince = System.nanoTime();
+            }
+        }
+    }
+
+    private void taskFinished(boolean measured) {
+        long finishedRun = -1;
+        synchronized (statsLock) {
+            if (measured) {
+                tracksAnalyzed++;
+                runTracks++;
+            }
+            if (--activeTasks == 0) {
+                busyNanos += System.nanoTime() - busySince;
+                if (analyzerPool.getQueue().isEmpty()) {
+                    finishedRun = runTracks;
+                    runTracks = 0;
+                }
+            }
+        }
+
+        if (finishedRun > 0) {
+            index.save();
+            System.out.printf("[loudness] %d tracks analyzed, %.1f tracks/min%n",
+                    finishedRun, getTracksPerMinute());
+        }
+    }
+}
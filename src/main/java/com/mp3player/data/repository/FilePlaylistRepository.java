@@ -1,55 +1,224 @@
 package com.mp3player.data.repository;
 
-import com.mp3player.domain.entity.Playlist;
+import com.mp3player.data.library.LibraryIndex;
+import com.mp3player.data.library.LibraryScanner;
+import com.mp3player.data.library.ScannedFile;
+import com.mp3player.data.metadata.AudioMetadata;
+import com.mp3player.data.metadata.AudioMetadataReader;
+import com.mp3player.data.playlist.PlaybackSessionFile;
+import com.mp3player.data.playlist.PlaylistEntry;
+import com.mp3player.data.playlist.PlaylistFileReader;
+import com.mp3player.data.playlist.PlaylistFileWriter;
+import com.mp3player.data.playlist.PlaylistStore;
+import com.mp3player.domain.entity.PlaybackSession;
+import com.mp3player.domain.entity.PlaylistChange;
+import com.mp3player.domain.entity.PlaylistManager;
 import com.mp3player.domain.entity.Song;
 import com.mp3player.domain.repository.PlaylistRepository;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 public class FilePlaylistRepository implements PlaylistRepository {
+    private final Set<LibraryScanner> activeScanners = new CopyOnWriteArraySet<>();
+    private final Set<PlaylistFileReader> activeReaders = new CopyOnWriteArraySet<>();
+    private final AtomicLong scanCounter = new AtomicLong();
+    private final LibraryIndex libraryIndex;
+    private final PlaylistStore playlistStore;
+    private final PlaybackSessionFile sessionFile;
+    private final AudioMetadataReader metadataReader = new AudioMetadataReader();
+    private final PlaylistFileWriter playlistWriter = new PlaylistFileWriter();
+
+    public FilePlaylistRepository() {
+        this(LibraryIndex.openDefault(), PlaylistStore.openDefault(), PlaybackSessionFile.openDefault());
+    }
+
+    public FilePlaylistRepository(LibraryIndex libraryIndex, PlaylistStore playlistStore,
+                                  PlaybackSessionFile sessionFile) {
+        this.libraryIndex = libraryIndex;
+        this.playlistStore = playlistStore;
+        this.sessionFile = sessionFile;
+    }
+
+    @Override
+    public PlaylistManager loadPlaylists() {
+        return playlistStore.load();
+    }
 
     @Override
-    public void savePlaylist(Playlist playlist) {
-        // Future implementation: save to JSON/XML file
+    public void recordPlaylistChange(PlaylistChange change, PlaylistManager state) {
+        playlistStore.append(change, state);
     }
 
     @Override
-    public Playlist loadPlaylist() {
-        // Future implementation: load from JSON/XML file
-        return new Playlist();
+    public PlaybackSession loadPlaybackSession() {
+        return sessionFile.read();
+    }
+
+    @Override
+    public void savePlaybackSession(PlaybackSession session) {
+        sessionFile.write(session);
     }
 
     @Override
     public List<Song> loadSongsFromDirectory(String directoryPath) {
         List<Song> songs = new ArrayList<>();
-        File directory = new File(directoryPath);
-
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles((dir, name) ->
-                name.toLowerCase().endsWith(".mp3") ||
-                name.toLowerCase().endsWith(".wav") ||
-                name.toLowerCase().endsWith(".m4a")
-            );
-
-            if (files != null) {
-                for (File file : files) {
-                    String id = UUID.randomUUID().toString();
-                    String title = getFileNameWithoutExtension(file.getName());
-                    String artist = "Unknown Artist";
-                    String filePath = file.getAbsolutePath();
-                    Duration duration = Duration.ZERO;
-
-                    Song song = new Song(id, title, artist, filePath, duration);
-                    songs.add(song);
+        scanSongsFromDirectory(directoryPath, songs::addAll, null);
+        return songs;
+    }
+
+    @Override
+    public void scanSongsFromDirectory(String directoryPath, Consumer<List<Song>> batchConsumer,
+                                       DoubleConsumer progressConsumer) {
+        Path root = Paths.get(directoryPath);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        libraryIndex.load();
+
+        LibraryScanner scanner = new LibraryScanner();
+        Object deliveryLock = new Object();
+        long scanStamp = scanCounter.incrementAndGet();
+        if (progressConsumer != null) {
+            // Directories done out of those found so far; new ones can still turn up
+            scanner.setProgressListener((directoriesScanned, directoriesFound, filesFound) ->
+                    progressConsumer.accept((double) directoriesScanned / directoriesFound));
+        }
+        activeScanners.add(scanner);
+        try {
+            scanner.scan(root, files -> {
+                // Resolve songs on the scanning thread, deliver them one batch at a time
+                List<Song> batch = new ArrayList<>(files.size());
+                for (ScannedFile file : files) {
+                    batch.add(libraryIndex.resolve(file, scanStamp, this::createSong));
                 }
+                synchronized (deliveryLock) {
+                    if (!scanner.isCancelled()) {
+                        batchConsumer.accept(batch);
+                    }
+                }
+            });
+
+            // Only a complete scan can tell which files were deleted
+            if (!scanner.isCancelled()) {
+                libraryIndex.removeMissing(root, scanStamp);
             }
+            libraryIndex.save();
+        } finally {
+            activeScanners.remove(scanner);
         }
+    }
 
-        return songs;
+    @Override
+    public Song loadSongFromFile(String filePath) {
+        Path path = Paths.get(filePath);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            libraryIndex.load();
+            ScannedFile file = new ScannedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+            Song song = libraryIndex.resolve(file, 0, this::createSong);
+            libraryIndex.save();
+            return song;
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void readPlaylistFile(String filePath, Consumer<List<Song>> batchConsumer) throws IOException {
+        libraryIndex.load();
+
+        PlaylistFileReader reader = new PlaylistFileReader();
+        activeReaders.add(reader);
+        try {
+            reader.read(Paths.get(filePath), this::resolvePlaylistEntry, batchConsumer);
+        } finally {
+            activeReaders.remove(reader);
+        }
+    }
+
+    @Override
+    public void writePlaylistFile(List<Song> songs, String filePath, boolean relativePaths) throws IOException {
+        playlistWriter.write(songs, Paths.get(filePath), relativePaths);
+    }
+
+    @Override
+    public void cancelScan() {
+        for (LibraryScanner scanner : activeScanners) {
+            scanner.cancel();
+        }
+        for (PlaylistFileReader reader : activeReaders) {
+            reader.cancel();
+        }
+    }
+
+    // Runs on the reader's worker threads: one stat per entry, no tag reading, and
+    // a fingerprint only for files outside the library
+    private Song resolvePlaylistEntry(PlaylistEntry entry) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(entry.getPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null; // missing or unreadable
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+
+        ScannedFile file = new ScannedFile(entry.getPath(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        Song indexed = libraryIndex.lookup(file);
+        if (indexed != null) {
+            return indexed;
+        }
+
+        String filePath = entry.getPath().toAbsolutePath().toString();
+        String title = entry.getTitle().isEmpty()
+                ? getFileNameWithoutExtension(entry.getPath().getFileName().toString())
+                : entry.getTitle();
+        String artist = entry.getArtist().isEmpty() ? "Unknown Artist" : entry.getArtist();
+        return new Song(libraryIndex.identify(entry.getPath()), title, artist, "", filePath,
+                Duration.ofMillis(entry.getDurationMillis()));
+    }
+
+    private Song createSong(ScannedFile file, String id) {
+        AudioMetadata metadata = metadataReader.read(file.getPath());
+        String title = metadata.getTitle();
+        String artist = metadata.getArtist();
+
+        if (title == null || title.isEmpty()) {
+            // No tags: fall back to "Artist - Title" file names
+            title = getFileNameWithoutExtension(file.getPath().getFileName().toString());
+            if (title.contains(" - ") && (artist == null || artist.isEmpty())) {
+                String[] parts = title.split(" - ", 2);
+                artist = parts[0].trim();
+                title = parts[1].trim();
+            }
+        }
+        if (artist == null || artist.isEmpty()) {
+            artist = "Unknown Artist";
+        }
+
+        String album = metadata.getAlbum() != null ? metadata.getAlbum() : "";
+        String filePath = file.getPath().toAbsolutePath().toString();
+        Duration duration = Duration.ofMillis(metadata.getDurationMillis());
+
+        return new Song(id, title, artist, album, filePath, duration);
     }
 
     private String getFileNameWithoutExtension(String fileName) {
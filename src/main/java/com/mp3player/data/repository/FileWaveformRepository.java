@@ -0,0 +1,99 @@
+package com.mp3player.data.repository;
+
+import com.mp3player.data.audio.AudioDecoderRegistry;
+import com.mp3player.data.audio.WaveformCache;
+import com.mp3player.data.audio.WaveformExtractor;
+import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.entity.Waveform;
+import com.mp3player.domain.repository.WaveformRepository;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Waveforms from the on-disk cache, extracted on a small pool of low priority
+ * threads the first time a track is seen so decoding never competes with
+ * playback. Cache lookups run on the same threads, so the caller never
+ * touches the disk. Concurrent requests for the same track share one
+ * extraction.
+ */
+public class FileWaveformRepository implements WaveformRepository {
+    private final WaveformCache cache;
+    private final WaveformExtractor extractor;
+    private final ThreadPoolExecutor extractorPool;
+    private final Map<String, CompletableFuture<Waveform>> extractions = new ConcurrentHashMap<>();
+
+    public FileWaveformRepository() {
+        this(WaveformCache.openDefault(), new WaveformExtractor(AudioDecoderRegistry.createDefault()));
+    }
+
+    public FileWaveformRepository(WaveformCache cache, WaveformExtractor extractor) {
+        this.cache = cache;
+        this.extractor = extractor;
+        int workers = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 4));
+        this.extractorPool = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "waveform-extractor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        extractorPool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void loadWaveform(Song song, Consumer<Waveform> onLoaded) {
+        extractorPool.execute(() -> lookUp(Paths.get(song.getFilePath()), onLoaded));
+    }
+
+    private void lookUp(Path file, Consumer<Waveform> onLoaded) {
+        String key;
+        try {
+            key = cache.keyFor(file);
+        } catch (IOException e) {
+            return; // file is gone
+        }
+
+        Waveform cached = cache.read(key);
+        if (cached != null) {
+            onLoaded.accept(cached);
+            return;
+        }
+
+        extractions.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> extract(file, k), extractorPool))
+                .whenComplete((waveform, error) -> {
+                    extractions.remove(key);
+                    if (waveform != null) {
+                        onLoaded.accept(waveform);
+                    }
+                });
+    }
+
+    private Waveform extract(Path file, String key) {
+        Waveform waveform;
+        try {
+            waveform = extractor.extract(file);
+        } catch (UnsupportedAudioFileException e) {
+            return null; // no decoder for this format, e.g. MP3 without a Java Sound provider
+        } catch (IOException e) {
+            System.err.println("Error extracting waveform: " + e.getMessage());
+            return null;
+        }
+
+        try {
+            cache.write(key, waveform);
+        } catch (IOException e) {
+            System.err.println("Error writing waveform cache: " + e.getMessage());
+        }
+        return waveform;
+    }
+}
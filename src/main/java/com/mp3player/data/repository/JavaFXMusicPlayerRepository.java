@@ -1,35 +1,57 @@
 package com.mp3player.data.repository;
 
 import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.repository.EqualizerRepository;
 import com.mp3player.domain.repository.MusicPlayerRepository;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
 import javafx.scene.media.AudioEqualizer;
 import javafx.scene.media.EqualizerBand;
-import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
 
-import java.io.File;
+import java.util.function.Supplier;
 
-public class JavaFXMusicPlayerRepository implements MusicPlayerRepository {
+public class JavaFXMusicPlayerRepository implements MusicPlayerRepository, EqualizerRepository {
     private MediaPlayer mediaPlayer;
     private boolean isPaused = false;
     private double[] equalizerGains = new double[10]; // Store current equalizer settings
     private boolean equalizerEnabled = false;
     private Runnable onEndOfMediaListener;
     private double currentVolume = 0.5; // Store current volume
+    private double trackGain = 1.0; // Loudness normalization for the current song
     private double currentPlaybackSpeed = 1.0; // Store current playback speed
 
+    private Song currentSong;
+
+    // Players of recently played and upcoming songs, kept ready for instant replay and skipping
+    private final MediaPlayerCache playerCache = new MediaPlayerCache(4, 256L * 1024 * 1024);
+    private Supplier<Song> previousSongProvider;
+
+    // Gapless playback: the next track's player is created ahead of time
+    private boolean gaplessEnabled = true;
+    private double prerollSeconds = 5.0;
+    private Supplier<Song> nextSongProvider;
+    private final ChangeListener<Duration> prerollListener = (obs, oldTime, newTime) -> prepareNextIfDue(newTime);
+
+    private final MediaSpectrumSource spectrumSource = new MediaSpectrumSource();
+
+    // Time from play() until the player reports PLAYING
+    private long transitionStartNanos;
+    private long lastTransitionLatencyNanos;
+
     @Override
     public void play(Song song) {
-        stop();
+        transitionStartNanos = System.nanoTime();
+        Song outgoingSong = currentSong;
+        MediaPlayer outgoing = detachCurrentPlayer();
 
         try {
-            File file = new File(song.getFilePath());
-            Media media = new Media(file.toURI().toString());
-            mediaPlayer = new MediaPlayer(media);
+            mediaPlayer = playerCache.acquire(song);
+            currentSong = song;
 
             // Apply saved settings to new media player
-            mediaPlayer.setVolume(currentVolume);
+            mediaPlayer.setVolume(effectiveVolume());
             mediaPlayer.setRate(currentPlaybackSpeed);
             applyEqualizerSettings();
 
@@ -37,13 +59,107 @@ public class JavaFXMusicPlayerRepository implements MusicPlayerRepository {
             if (onEndOfMediaListener != null) {
                 mediaPlayer.setOnEndOfMedia(onEndOfMediaListener);
             }
+            mediaPlayer.setOnPlaying(this::recordTransitionLatency);
+            mediaPlayer.currentTimeProperty().addListener(prerollListener);
+            spectrumSource.attach(mediaPlayer);
 
             mediaPlayer.play();
             isPaused = false;
         } catch (Exception e) {
             System.err.println("Error playing song: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            // Keep the old player around once the new one has been started
+            if (outgoing != null) {
+                playerCache.release(outgoingSong, outgoing);
+            }
+        }
+        // After the caller has moved the playlist on to this song
+        Platform.runLater(this::warmNeighbours);
+    }
+
+    // Keeps the songs around the current one ready: previous for back-skip, next for gapless
+    private void warmNeighbours() {
+        if (previousSongProvider != null) {
+            prepare(previousSongProvider.get());
+        }
+        if (gaplessEnabled && nextSongProvider != null) {
+            prepare(nextSongProvider.get());
+        }
+    }
+
+    private void prepare(Song song) {
+        // The playing song is reused as is when it is repeated
+        if (song != null && !song.equals(currentSong)) {
+            playerCache.prepare(song);
+        }
+    }
+
+    private MediaPlayer detachCurrentPlayer() {
+        MediaPlayer outgoing = mediaPlayer;
+        if (outgoing != null) {
+            outgoing.currentTimeProperty().removeListener(prerollListener);
+            spectrumSource.detach(outgoing);
+            outgoing.setOnEndOfMedia(null);
+            outgoing.setOnPlaying(null);
+            outgoing.setOnReady(null);
+            outgoing.stop();
+            mediaPlayer = null;
+        }
+        currentSong = null;
+        isPaused = false;
+        return outgoing;
+    }
+
+    private void prepareNextIfDue(Duration currentTime) {
+        if (!gaplessEnabled || nextSongProvider == null || mediaPlayer == null) {
+            return;
         }
+
+        Duration total = mediaPlayer.getTotalDuration();
+        if (total == null || total.isUnknown() || total.isIndefinite()) {
+            return;
+        }
+
+        if (total.subtract(currentTime).toSeconds() <= prerollSeconds) {
+            // The next song may have changed since this one started, e.g. after a playlist edit
+            prepare(nextSongProvider.get());
+        }
+    }
+
+    private void recordTransitionLatency() {
+        if (transitionStartNanos != 0) {
+            lastTransitionLatencyNanos = System.nanoTime() - transitionStartNanos;
+            transitionStartNanos = 0;
+        }
+    }
+
+    public double getLastTransitionLatencyMillis() {
+        return lastTransitionLatencyNanos / 1_000_000.0;
+    }
+
+    public void setGaplessEnabled(boolean enabled) {
+        this.gaplessEnabled = enabled;
+    }
+
+    public boolean isGaplessEnabled() {
+        return gaplessEnabled;
+    }
+
+    public void setPrerollSeconds(double seconds) {
+        this.prerollSeconds = Math.max(0.5, seconds);
+    }
+
+    public void setNextSongProvider(Supplier<Song> provider) {
+        this.nextSongProvider = provider;
+    }
+
+    public void setPreviousSongProvider(Supplier<Song> provider) {
+        this.previousSongProvider = provider;
+    }
+
+    public MediaPlayerCache getPlayerCache() {
+        return playerCache;
     }
 
     @Override
@@ -64,11 +180,10 @@ public class JavaFXMusicPlayerRepository implements MusicPlayerRepository {
 
     @Override
     public void stop() {
-        if (mediaPlayer != null) {
-            mediaPlayer.stop();
-            mediaPlayer.dispose();
-            mediaPlayer = null;
-            isPaused = false;
+        Song outgoingSong = currentSong;
+        MediaPlayer outgoing = detachCurrentPlayer();
+        if (outgoing != null) {
+            playerCache.release(outgoingSong, outgoing);
         }
     }
 
@@ -76,10 +191,23 @@ public class JavaFXMusicPlayerRepository implements MusicPlayerRepository {
     public void setVolume(double volume) {
         this.currentVolume = volume;
         if (mediaPlayer != null) {
-            mediaPlayer.setVolume(volume);
+            mediaPlayer.setVolume(effectiveVolume());
+        }
+    }
+
+    @Override
+    public void setTrackGain(double gain) {
+        this.trackGain = Math.max(0.0, gain);
+        if (mediaPlayer != null) {
+            mediaPlayer.setVolume(effectiveVolume());
         }
     }
 
+    // MediaPlayer volume stops at 1.0, so quiet tracks are only raised as far as the slider leaves room
+    private double effectiveVolume() {
+        return Math.min(1.0, currentVolume * trackGain);
+    }
+
     @Override
     public void setPlaybackSpeed(double speed) {
         this.currentPlaybackSpeed = speed;
@@ -91,7 +219,14 @@ public class JavaFXMusicPlayerRepository implements MusicPlayerRepository {
     @Override
     public void seek(java.time.Duration position) {
         if (mediaPlayer != null) {
-            mediaPlayer.seek(Duration.millis(position.toMillis()));
+            Duration target = Duration.millis(position.toMillis());
+            if (mediaPlayer.getStatus() == MediaPlayer.Status.UNKNOWN) {
+                // Media still loading, seeks are ignored until it is ready
+                MediaPlayer player = mediaPlayer;
+                player.setOnReady(() -> player.seek(target));
+            } else {
+                mediaPlayer.seek(target);
+            }
         }
     }
 
@@ -125,16 +260,23 @@ public class JavaFXMusicPlayerRepository implements MusicPlayerRepository {
         return mediaPlayer;
     }
 
+    @Override
     public void setOnEndOfMediaListener(Runnable listener) {
         this.onEndOfMediaListener = listener;
     }
 
+    public MediaSpectrumSource getSpectrumSource() {
+        return spectrumSource;
+    }
+
     // Equalizer methods
+    @Override
     public void setEqualizerEnabled(boolean enabled) {
         this.equalizerEnabled = enabled;
         applyEqualizerSettings();
     }
 
+    @Override
     public void setEqualizerBand(int bandIndex, double gain) {
         if (bandIndex >= 0 && bandIndex < equalizerGains.length) {
             equalizerGains[bandIndex] = gain;
@@ -142,6 +284,7 @@ public class JavaFXMusicPlayerRepository implements MusicPlayerRepository {
         }
     }
 
+    @Override
     public void setAllEqualizerBands(double[] gains) {
         if (gains != null && gains.length == equalizerGains.length) {
             System.arraycopy(gains, 0, equalizerGains, 0, gains.length);
@@ -0,0 +1,173 @@
+package com.mp3player.data.repository;
+
+import com.mp3player.domain.entity.Song;
+import javafx.application.Platform;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Idle {@link MediaPlayer}s kept ready for songs that are likely to be played
+ * soon, so going back to a song or on to the next one skips opening and
+ * parsing the media again. Players are checked out while playing and handed
+ * back afterwards. The least recently used idle players are disposed once the
+ * cache holds more than the allowed number of players or bytes of media,
+ * where a player's size is that of its file.
+ *
+ * <p>Must be used from the JavaFX application thread.
+ */
+public class MediaPlayerCache {
+    private static class Entry {
+        final MediaPlayer player;
+        final long bytes;
+
+        Entry(MediaPlayer player, long bytes) {
+            this.player = player;
+            this.bytes = bytes;
+        }
+    }
+
+    // Access order, so iteration starts at the least recently used player
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxEntries;
+    private long maxBytes;
+    private long cachedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public MediaPlayerCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached player for the song, or a new one when there is none.
+     * The player belongs to the caller until it is released.
+     */
+    public MediaPlayer acquire(Song song) {
+        Entry entry = entries.remove(song.getId());
+        if (entry != null) {
+            cachedBytes -= entry.bytes;
+            if (entry.player.getStatus() != MediaPlayer.Status.HALTED) {
+                hits++;
+                return entry.player;
+            }
+            dispose(entry.player);
+        }
+        misses++;
+        return createPlayer(song);
+    }
+
+    /**
+     * Starts loading the song's media in the background if it is not cached
+     * yet, so a later {@link #acquire(Song)} finds it ready.
+     */
+    public void prepare(Song song) {
+        if (song == null || entries.get(song.getId()) != null) {
+            return;
+        }
+        try {
+            // Creating the player starts loading and prerolling the media
+            put(song, createPlayer(song));
+        } catch (Exception e) {
+            System.err.println("Error preparing song: " + e.getMessage());
+        }
+    }
+
+    // Hands a stopped player back so the song can be played again without reloading
+    public void release(Song song, MediaPlayer player) {
+        if (song == null || player.getStatus() == MediaPlayer.Status.HALTED) {
+            dispose(player);
+            return;
+        }
+        put(song, player);
+    }
+
+    public boolean contains(Song song) {
+        return song != null && entries.containsKey(song.getId());
+    }
+
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            dispose(entry.player);
+        }
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    public void setLimits(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    private void put(Song song, MediaPlayer player) {
+        long bytes = new File(song.getFilePath()).length();
+        if (maxEntries <= 0 || bytes > maxBytes) {
+            dispose(player);
+            return;
+        }
+        Entry previous = entries.put(song.getId(), new Entry(player, bytes));
+        if (previous != null) {
+            cachedBytes -= previous.bytes;
+            if (previous.player != player) {
+                dispose(previous.player);
+            }
+        }
+        cachedBytes += bytes;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || cachedBytes > maxBytes) && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            cachedBytes -= eldest.bytes;
+            evictions++;
+            dispose(eldest.player);
+        }
+    }
+
+    private MediaPlayer createPlayer(Song song) {
+        File file = new File(song.getFilePath());
+        Media media = new Media(file.toURI().toString());
+        return new MediaPlayer(media);
+    }
+
+    private void dispose(MediaPlayer player) {
+        // Native resources are released after the current pulse, off the playback path
+        Platform.runLater(player::dispose);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,80 @@
+package com.mp3player.data.repository;
+
+import javafx.scene.media.AudioSpectrumListener;
+import javafx.scene.media.MediaPlayer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Spectrum of whichever {@link MediaPlayer} is currently playing. The source
+ * registers a single listener on each player when it becomes current and
+ * removes it when the player is retired, and passes every update on to all
+ * subscribed consumers. Players only compute a spectrum while someone is
+ * subscribed.
+ */
+public class MediaSpectrumSource {
+    private final List<SpectrumListener> listeners = new CopyOnWriteArrayList<>();
+    private final AudioSpectrumListener dispatcher = this::dispatch;
+    private MediaPlayer attachedPlayer;
+    private int bandCount = 64;
+    private double intervalSeconds = 0.05;
+
+    public void addListener(SpectrumListener listener) {
+        listeners.add(listener);
+        if (listeners.size() == 1 && attachedPlayer != null) {
+            register(attachedPlayer);
+        }
+    }
+
+    public void removeListener(SpectrumListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && attachedPlayer != null) {
+            attachedPlayer.setAudioSpectrumListener(null);
+        }
+    }
+
+    public void setBandCount(int bandCount) {
+        this.bandCount = bandCount;
+        if (attachedPlayer != null) {
+            attachedPlayer.setAudioSpectrumNumBands(bandCount);
+        }
+    }
+
+    public void setInterval(double seconds) {
+        this.intervalSeconds = seconds;
+        if (attachedPlayer != null) {
+            attachedPlayer.setAudioSpectrumInterval(seconds);
+        }
+    }
+
+    void attach(MediaPlayer player) {
+        if (player == attachedPlayer) {
+            return;
+        }
+        detach(attachedPlayer);
+        attachedPlayer = player;
+        if (!listeners.isEmpty()) {
+            register(player);
+        }
+    }
+
+    void detach(MediaPlayer player) {
+        if (player != null && player == attachedPlayer) {
+            player.setAudioSpectrumListener(null);
+            attachedPlayer = null;
+        }
+    }
+
+    private void register(MediaPlayer player) {
+        player.setAudioSpectrumNumBands(bandCount);
+        player.setAudioSpectrumInterval(intervalSeconds);
+        player.setAudioSpectrumListener(dispatcher);
+    }
+
+    private void dispatch(double timestamp, double duration, float[] magnitudes, float[] phases) {
+        for (SpectrumListener listener : listeners) {
+            listener.onSpectrum(timestamp, magnitudes);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.mp3player.data.repository;
+
+/**
+ * Receives spectrum updates from a {@link MediaSpectrumSource} on the JavaFX
+ * application thread. The magnitudes (in dB) are only valid during the call.
+ */
+@FunctionalInterface
+public interface SpectrumListener {
+    void onSpectrum(double timestamp, float[] magnitudes);
+}
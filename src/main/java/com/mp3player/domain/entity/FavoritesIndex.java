@@ -0,0 +1,158 @@
+package com.mp3player.domain.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which songs of a playlist are favorites, as one bit per playlist index.
+ * Keeps the favorites list in playlist order without rescanning the playlist:
+ * a song's place among the favorites is the number of bits set before it,
+ * read from a Fenwick tree over the per-word bit counts, so toggling and
+ * ranking take O(log n) word operations and never copy the bits.
+ */
+public class FavoritesIndex {
+    private long[] words = new long[16];
+    // Fenwick tree over Long.bitCount(words[i]), 1-based
+    private int[] tree = new int[17];
+    private int favoriteCount;
+    private int indexedCount;
+
+    private PlaylistEntity source;
+    private long indexedVersion = -1;
+    private long indexedRemovalVersion = -1;
+
+    /**
+     * Brings the index up to date with the playlist. Appended songs are indexed
+     * incrementally and removals made through {@link #removed} are already
+     * accounted for; any other removal triggers a rebuild.
+     */
+    public void sync(PlaylistEntity entity) {
+        if (entity == source && entity.getVersion() == indexedVersion) {
+            return;
+        }
+
+        if (entity != source || entity.getRemovalVersion() != indexedRemovalVersion
+                || entity.getSongCount() < indexedCount) {
+            Arrays.fill(words, 0L);
+            Arrays.fill(tree, 0);
+            favoriteCount = 0;
+            indexedCount = 0;
+            source = entity;
+        }
+
+        List<Song> songs = entity.getSongsView();
+        ensureCapacity(songs.size());
+        for (int i = indexedCount; i < songs.size(); i++) {
+            if (songs.get(i).isFavorite()) {
+                set(i, true);
+            }
+        }
+        indexedCount = songs.size();
+
+        indexedVersion = entity.getVersion();
+        indexedRemovalVersion = entity.getRemovalVersion();
+    }
+
+    // Records the favorite flag of the song at the playlist index and returns its place among the favorites
+    public int set(int index, boolean favorite) {
+        ensureCapacity(index + 1);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        boolean current = (words[word] & bit) != 0;
+        if (current != favorite) {
+            words[word] ^= bit;
+            int delta = favorite ? 1 : -1;
+            favoriteCount += delta;
+            for (int i = word + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+        return rank(index);
+    }
+
+    // Number of favorites before the playlist index
+    public int rank(int index) {
+        int word = index >>> 6;
+        if (word >= words.length) {
+            return favoriteCount;
+        }
+        int count = Long.bitCount(words[word] & ((1L << index) - 1));
+        for (int i = word; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    /**
+     * Drops the bit of a song just removed from the playlist at the index and
+     * shifts the later ones down, instead of rebuilding on the next sync. The
+     * index must have been in sync with the playlist before the removal.
+     */
+    public void removed(PlaylistEntity entity, int index) {
+        if (entity != source || index >= indexedCount) {
+            return;
+        }
+
+        int word = index >>> 6;
+        long below = (1L << index) - 1;
+        if ((words[word] & (1L << index)) != 0) {
+            favoriteCount--;
+        }
+        int lastWord = (indexedCount - 1) >>> 6;
+        words[word] = (words[word] & below) | ((words[word] >>> 1) & ~below);
+        for (int i = word + 1; i <= lastWord; i++) {
+            // The lowest bit of each later word moves to the top of the one before
+            words[i - 1] |= words[i] << 63;
+            words[i] >>>= 1;
+        }
+        indexedCount--;
+        rebuildTree(word);
+
+        indexedVersion = entity.getVersion();
+        indexedRemovalVersion = entity.getRemovalVersion();
+    }
+
+    public List<Song> getFavorites() {
+        List<Song> result = new ArrayList<>(favoriteCount);
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                result.add(source.getSongAt((word << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return favoriteCount;
+    }
+
+    private void ensureCapacity(int bits) {
+        int needed = (bits + 63) >>> 6;
+        if (needed > words.length) {
+            words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+            tree = new int[words.length + 1];
+            rebuildTree(0);
+        }
+    }
+
+    // Recomputes the tree nodes covering words from the given one on, in linear time
+    private void rebuildTree(int fromWord) {
+        // Nodes below the first changed word's node only cover unchanged words
+        int first = fromWord + 1;
+        for (int i = first; i < tree.length; i++) {
+            tree[i] = 0;
+        }
+        for (int i = 1; i < tree.length; i++) {
+            if (i >= first) {
+                tree[i] += Long.bitCount(words[i - 1]);
+            }
+            int parent = i + (i & -i);
+            if (parent < tree.length && parent >= first) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mp3player.domain.entity;
+
+/**
+ * Measured loudness of a track or album: integrated loudness in LUFS, true
+ * peak in dBTP and the number of 400 ms blocks that passed the gates, which
+ * weighs tracks when they are combined into an album.
+ */
+public class Loudness {
+    // Loudest the true peak may get after normalization
+    private static final double PEAK_CEILING_DBTP = -1.0;
+
+    private final double integratedLufs;
+    private final double truePeakDbtp;
+    private final int gatedBlocks;
+
+    public Loudness(double integratedLufs, double truePeakDbtp, int gatedBlocks) {
+        this.integratedLufs = integratedLufs;
+        this.truePeakDbtp = truePeakDbtp;
+        this.gatedBlocks = gatedBlocks;
+    }
+
+    public double getIntegratedLufs() {
+        return integratedLufs;
+    }
+
+    public double getTruePeakDbtp() {
+        return truePeakDbtp;
+    }
+
+    public int getGatedBlocks() {
+        return gatedBlocks;
+    }
+
+    /**
+     * Gain in dB that brings this to the target loudness, lowered where needed
+     * so the true peak stays below -1 dBTP. Zero for silence.
+     */
+    public double gainDbFor(double targetLufs) {
+        if (gatedBlocks == 0 || Double.isInfinite(integratedLufs)) {
+            return 0.0;
+        }
+        double gain = targetLufs - integratedLufs;
+        if (!Double.isInfinite(truePeakDbtp)) {
+            gain = Math.min(gain, PEAK_CEILING_DBTP - truePeakDbtp);
+        }
+        return gain;
+    }
+
+    /**
+     * Album loudness from its tracks: the block-weighted power mean of the
+     * track loudness, with the loudest true peak. Equal to measuring the album
+     * as one stream when the tracks' relative gates are close.
+     */
+    public static Loudness combine(Iterable<Loudness> tracks) {
+        double energy = 0;
+        int blocks = 0;
+        double peak = Double.NEGATIVE_INFINITY;
+        for (Loudness track : tracks) {
+            if (track.gatedBlocks > 0) {
+                energy += track.gatedBlocks * Math.pow(10.0, track.integratedLufs / 10.0);
+                blocks += track.gatedBlocks;
+            }
+            peak = Math.max(peak, track.truePeakDbtp);
+        }
+        double integrated = blocks > 0 ? 10.0 * Math.log10(energy / blocks) : Double.NEGATIVE_INFINITY;
+        return new Loudness(integrated, peak, blocks);
+    }
+}
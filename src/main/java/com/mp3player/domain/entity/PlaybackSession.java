@@ -0,0 +1,22 @@
+package com.mp3player.domain.entity;
+
+/**
+ * The song that was playing when the app last closed, and where it stopped.
+ */
+public class PlaybackSession {
+    private final Song song;
+    private final long positionMillis;
+
+    public PlaybackSession(Song song, long positionMillis) {
+        this.song = song;
+        this.positionMillis = positionMillis;
+    }
+
+    public Song getSong() {
+        return song;
+    }
+
+    public long getPositionMillis() {
+        return positionMillis;
+    }
+}
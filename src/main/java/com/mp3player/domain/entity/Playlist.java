@@ -1,44 +1,43 @@
 package com.mp3player.domain.entity;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 public class Playlist {
     private PlaylistEntity playlistEntity;
-    private final List<Song> shuffledSongs;
+    // Position in shuffleOrder while shuffled, playlist index otherwise
     private int currentIndex;
     private boolean isShuffled;
     private boolean isRepeat;
     private final Random random;
+    private final ShuffleOrder shuffleOrder;
+    private final SongSearchIndex searchIndex = new SongSearchIndex();
+    private final FavoritesIndex favoritesIndex = new FavoritesIndex();
 
     public Playlist() {
         this.playlistEntity = new PlaylistEntity("My Playlist");
-        this.shuffledSongs = new ArrayList<>();
         this.currentIndex = -1;
         this.isShuffled = false;
         this.isRepeat = false;
         this.random = new Random();
+        this.shuffleOrder = new ShuffleOrder(random);
     }
 
     public Playlist(PlaylistEntity playlistEntity) {
         this.playlistEntity = playlistEntity;
-        this.shuffledSongs = new ArrayList<>();
-        this.currentIndex = -1;
+        this.currentIndex = playlistEntity.isEmpty() ? -1 : 0;
         this.isShuffled = false;
         this.isRepeat = false;
         this.random = new Random();
+        this.shuffleOrder = new ShuffleOrder(random);
     }
 
     public void setPlaylistEntity(PlaylistEntity playlistEntity) {
         if (playlistEntity != null) {
             this.playlistEntity = playlistEntity;
-            this.shuffledSongs.clear();
             this.currentIndex = playlistEntity.isEmpty() ? -1 : 0;
             if (isShuffled) {
-                shuffledSongs.addAll(playlistEntity.getSongs());
-                Collections.shuffle(shuffledSongs, random);
+                shuffleOrder.reset(playlistEntity.getSongCount(), -1);
             }
         }
     }
@@ -48,21 +47,47 @@ public class Playlist {
     }
 
     public void addSong(Song song) {
+        int oldCount = playlistEntity.getSongCount();
         playlistEntity.addSong(song);
         if (isShuffled) {
-            shuffledSongs.add(song);
+            shuffleOrder.addRange(oldCount, playlistEntity.getSongCount());
         }
         if (currentIndex == -1) {
             currentIndex = 0;
         }
     }
 
+    public List<Song> addSongs(List<Song> songs) {
+        return addSongs(songs, null);
+    }
+
+    // Also collects the songs left out because the playlist has them with another file
+    public List<Song> addSongs(List<Song> songs, List<Song> moved) {
+        int oldCount = playlistEntity.getSongCount();
+        List<Song> added = playlistEntity.addAll(songs, moved);
+        if (isShuffled) {
+            shuffleOrder.addRange(oldCount, playlistEntity.getSongCount());
+        }
+        if (currentIndex == -1 && !playlistEntity.isEmpty()) {
+            currentIndex = 0;
+        }
+        return added;
+    }
+
+    public void removeSong(Song song) {
+        removeSong(playlistEntity.indexOf(song));
+    }
+
     public void removeSong(int index) {
-        List<Song> songs = playlistEntity.getSongs();
-        if (index >= 0 && index < songs.size()) {
-            Song songToRemove = songs.get(index);
+        Song songToRemove = playlistEntity.getSongAt(index);
+        if (songToRemove != null) {
+            favoritesIndex.sync(playlistEntity);
             playlistEntity.removeSongAt(index);
-            shuffledSongs.remove(songToRemove);
+            favoritesIndex.removed(playlistEntity, index);
+            int removedIndex = isShuffled ? shuffleOrder.remove(index) : index;
+            if (removedIndex >= 0 && removedIndex < currentIndex) {
+                currentIndex--;
+            }
             if (currentIndex >= playlistEntity.getSongCount()) {
                 currentIndex = playlistEntity.getSongCount() - 1;
             }
@@ -70,11 +95,23 @@ public class Playlist {
     }
 
     public Song getCurrentSong() {
-        List<Song> activeList = isShuffled ? shuffledSongs : playlistEntity.getSongs();
-        if (currentIndex >= 0 && currentIndex < activeList.size()) {
-            return activeList.get(currentIndex);
+        return songAt(currentIndex);
+    }
+
+    // Song at a position of the play order
+    private Song songAt(int index) {
+        if (isShuffled) {
+            syncShuffleOrder();
+            return playlistEntity.getSongAt(shuffleOrder.get(index));
+        }
+        return playlistEntity.getSongAt(index);
+    }
+
+    // Starts a new order if the playlist was changed without going through this class
+    private void syncShuffleOrder() {
+        if (shuffleOrder.size() != playlistEntity.getSongCount()) {
+            shuffleOrder.reset(playlistEntity.getSongCount(), -1);
         }
-        return null;
     }
 
     public Song nextSong() {
@@ -82,14 +119,14 @@ public class Playlist {
             return null;
         }
 
-        List<Song> activeList = isShuffled ? shuffledSongs : playlistEntity.getSongs();
+        int activeSize = getActiveSize();
 
         if (isRepeat) {
             // Repeat mode: loop the playlist
-            currentIndex = (currentIndex + 1) % activeList.size();
+            currentIndex = (currentIndex + 1) % activeSize;
         } else {
             // No repeat: stop at the end
-            if (currentIndex < activeList.size() - 1) {
+            if (currentIndex < activeSize - 1) {
                 currentIndex++;
             } else {
                 // Reached end, stay at last song
@@ -100,15 +137,53 @@ public class Playlist {
         return getCurrentSong();
     }
 
+    // The song nextSong() would move to, without moving
+    public Song peekNextSong() {
+        if (playlistEntity.isEmpty()) {
+            return null;
+        }
+
+        int activeSize = getActiveSize();
+        int nextIndex;
+        if (isRepeat) {
+            nextIndex = (currentIndex + 1) % activeSize;
+        } else if (currentIndex < activeSize - 1) {
+            nextIndex = currentIndex + 1;
+        } else {
+            return null;
+        }
+
+        return songAt(nextIndex);
+    }
+
+    // Song previousSong() would move to, without moving
+    public Song peekPreviousSong() {
+        if (playlistEntity.isEmpty()) {
+            return null;
+        }
+
+        int activeSize = getActiveSize();
+        int previousIndex;
+        if (isRepeat) {
+            previousIndex = (currentIndex - 1 + activeSize) % activeSize;
+        } else if (currentIndex > 0) {
+            previousIndex = currentIndex - 1;
+        } else {
+            return null;
+        }
+
+        return songAt(previousIndex);
+    }
+
     public Song previousSong() {
         if (playlistEntity.isEmpty()) {
             return null;
         }
 
-        List<Song> activeList = isShuffled ? shuffledSongs : playlistEntity.getSongs();
+        int activeSize = getActiveSize();
 
         if (isRepeat) {
-            currentIndex = (currentIndex - 1 + activeList.size()) % activeList.size();
+            currentIndex = (currentIndex - 1 + activeSize) % activeSize;
         } else {
             if (currentIndex > 0) {
                 currentIndex--;
@@ -120,31 +195,17 @@ public class Playlist {
 
     public void setShuffle(boolean shuffle) {
         if (shuffle && !isShuffled) {
-            // Enable shuffle - get current song BEFORE changing isShuffled
-            Song current = getCurrentSong();
-
-            shuffledSongs.clear();
-            shuffledSongs.addAll(playlistEntity.getSongs());
-            Collections.shuffle(shuffledSongs, random);
+            // Enable shuffle - the order starts with the current song, the rest is drawn as we go
+            int count = playlistEntity.getSongCount();
+            shuffleOrder.reset(count, currentIndex >= 0 && currentIndex < count ? currentIndex : -1);
             isShuffled = true;
-
-            // Find current song in shuffled list
-            if (current != null) {
-                currentIndex = shuffledSongs.indexOf(current);
-            } else {
-                currentIndex = 0;
-            }
+            currentIndex = 0;
         } else if (!shuffle && isShuffled) {
-            // Disable shuffle - get current song BEFORE changing isShuffled
-            Song current = getCurrentSong();
+            // Disable shuffle - continue from the current song's place in the playlist
+            syncShuffleOrder();
+            int index = shuffleOrder.get(currentIndex);
             isShuffled = false;
-
-            // Find current song in original list
-            if (current != null) {
-                currentIndex = playlistEntity.getSongs().indexOf(current);
-            } else {
-                currentIndex = 0;
-            }
+            currentIndex = index >= 0 ? index : 0;
         }
     }
 
@@ -161,7 +222,7 @@ public class Playlist {
     }
 
     public List<Song> getAllSongs() {
-        return Collections.unmodifiableList(playlistEntity.getSongs());
+        return playlistEntity.getSongs();
     }
 
     public List<Song> getFilteredSongs(String searchText) {
@@ -169,39 +230,59 @@ public class Playlist {
             return getAllSongs();
         }
 
-        String lowerSearch = searchText.toLowerCase();
-        List<Song> filtered = new ArrayList<>();
+        return searchSongs(playlistEntity.snapshot(), searchText);
+    }
 
-        for (Song song : playlistEntity.getSongs()) {
-            if (song.getTitle().toLowerCase().contains(lowerSearch) ||
-                song.getArtist().toLowerCase().contains(lowerSearch)) {
-                filtered.add(song);
-            }
-        }
+    // Captures what a background search will index; call from the thread that modifies the playlist
+    public PlaylistEntity.Snapshot snapshotForSearch() {
+        return playlistEntity.snapshot();
+    }
 
-        return filtered;
+    // Brings the index up to the snapshot and searches it, safe to call from a background thread
+    public List<Song> searchSongs(PlaylistEntity.Snapshot snapshot, String searchText) {
+        synchronized (searchIndex) {
+            searchIndex.sync(snapshot);
+            return searchIndex.search(searchText);
+        }
     }
 
     public List<Song> getFavoriteSongs() {
-        List<Song> favorites = new ArrayList<>();
-        for (Song song : playlistEntity.getSongs()) {
-            if (song.isFavorite()) {
-                favorites.add(song);
-            }
-        }
-        return favorites;
+        favoritesIndex.sync(playlistEntity);
+        return favoritesIndex.getFavorites();
     }
 
     public void toggleFavorite(Song song) {
         if (song != null) {
-            song.toggleFavorite();
+            setFavorite(song, !song.isFavorite());
+        }
+    }
+
+    /**
+     * Sets the song's favorite flag and returns its place in the favorites
+     * list, or -1 when the song is not in this playlist.
+     */
+    public int setFavorite(Song song, boolean favorite) {
+        song.setFavorite(favorite);
+        int index = playlistEntity.indexOf(song);
+        if (index < 0) {
+            return -1;
         }
+        playlistEntity.getSongAt(index).setFavorite(favorite);
+        favoritesIndex.sync(playlistEntity);
+        return favoritesIndex.set(index, favorite);
     }
 
-    public void clearFavorites() {
-        for (Song song : playlistEntity.getSongs()) {
-            song.setFavorite(false);
+    // Returns the songs that were favorites
+    public List<Song> clearFavorites() {
+        List<Song> cleared = getFavoriteSongs();
+        for (Song song : cleared) {
+            setFavorite(song, false);
         }
+        return cleared;
+    }
+
+    public int indexOf(Song song) {
+        return playlistEntity.indexOf(song);
     }
 
     public int getCurrentIndex() {
@@ -209,8 +290,7 @@ public class Playlist {
     }
 
     public void setCurrentIndex(int index) {
-        List<Song> activeList = isShuffled ? shuffledSongs : playlistEntity.getSongs();
-        if (index >= 0 && index < activeList.size()) {
+        if (index >= 0 && index < getActiveSize()) {
             this.currentIndex = index;
         }
     }
@@ -220,8 +300,11 @@ public class Playlist {
             return;
         }
 
-        List<Song> activeList = isShuffled ? shuffledSongs : playlistEntity.getSongs();
-        int index = activeList.indexOf(song);
+        int index = playlistEntity.indexOf(song);
+        if (index >= 0 && isShuffled) {
+            syncShuffleOrder();
+            index = shuffleOrder.positionOf(index);
+        }
         if (index >= 0) {
             this.currentIndex = index;
         }
@@ -234,4 +317,8 @@ public class Playlist {
     public int size() {
         return playlistEntity.getSongCount();
     }
+
+    private int getActiveSize() {
+        return playlistEntity.getSongCount();
+    }
 }
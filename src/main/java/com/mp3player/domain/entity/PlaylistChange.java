@@ -0,0 +1,103 @@
+package com.mp3player.domain.entity;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One edit to the playlist state, recorded so it can be replayed on the next start.
+ */
+public class PlaylistChange {
+    public enum Type {
+        CREATE_PLAYLIST,
+        DELETE_PLAYLIST,
+        RENAME_PLAYLIST,
+        SET_CURRENT_PLAYLIST,
+        ADD_SONGS,
+        REMOVE_SONG,
+        SET_FAVORITE,
+        SET_SHUFFLE,
+        SET_REPEAT,
+        RELOCATE_SONGS
+    }
+
+    private final Type type;
+    private final String playlistId;
+    // Playlist name or song id, depending on the type
+    private final String value;
+    private final List<Song> songs;
+    private final boolean enabled;
+
+    private PlaylistChange(Type type, String playlistId, String value, List<Song> songs, boolean enabled) {
+        this.type = type;
+        this.playlistId = playlistId;
+        this.value = value;
+        this.songs = songs;
+        this.enabled = enabled;
+    }
+
+    public static PlaylistChange playlistCreated(PlaylistEntity playlist) {
+        return new PlaylistChange(Type.CREATE_PLAYLIST, playlist.getId(), playlist.getName(),
+                Collections.emptyList(), false);
+    }
+
+    public static PlaylistChange playlistDeleted(PlaylistEntity playlist) {
+        return new PlaylistChange(Type.DELETE_PLAYLIST, playlist.getId(), null, Collections.emptyList(), false);
+    }
+
+    public static PlaylistChange playlistRenamed(PlaylistEntity playlist) {
+        return new PlaylistChange(Type.RENAME_PLAYLIST, playlist.getId(), playlist.getName(),
+                Collections.emptyList(), false);
+    }
+
+    public static PlaylistChange currentPlaylistChanged(PlaylistEntity playlist) {
+        return new PlaylistChange(Type.SET_CURRENT_PLAYLIST, playlist.getId(), null, Collections.emptyList(), false);
+    }
+
+    public static PlaylistChange songsAdded(PlaylistEntity playlist, List<Song> songs) {
+        return new PlaylistChange(Type.ADD_SONGS, playlist.getId(), null, songs, false);
+    }
+
+    public static PlaylistChange songRemoved(PlaylistEntity playlist, Song song) {
+        return new PlaylistChange(Type.REMOVE_SONG, playlist.getId(), song.getId(), Collections.emptyList(), false);
+    }
+
+    public static PlaylistChange favoriteChanged(Song song) {
+        return new PlaylistChange(Type.SET_FAVORITE, null, song.getId(), Collections.emptyList(), song.isFavorite());
+    }
+
+    public static PlaylistChange songsRelocated(List<Song> songs) {
+        return new PlaylistChange(Type.RELOCATE_SONGS, null, null, songs, false);
+    }
+
+    public static PlaylistChange shuffleChanged(boolean shuffle) {
+        return new PlaylistChange(Type.SET_SHUFFLE, null, null, Collections.emptyList(), shuffle);
+    }
+
+    public static PlaylistChange repeatChanged(boolean repeat) {
+        return new PlaylistChange(Type.SET_REPEAT, null, null, Collections.emptyList(), repeat);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPlaylistId() {
+        return playlistId;
+    }
+
+    public String getName() {
+        return value;
+    }
+
+    public String getSongId() {
+        return value;
+    }
+
+    public List<Song> getSongs() {
+        return songs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
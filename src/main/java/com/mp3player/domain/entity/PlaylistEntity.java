@@ -1,24 +1,65 @@
 package com.mp3player.domain.entity;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class PlaylistEntity {
     private final String id;
     private String name;
-    private final List<Song> songs;
+    private final ArrayList<Song> songs;
+    private final List<Song> songsView;
+    private long version;
+    private long removalVersion;
+    private long replacementVersion;
+
+    // Song id -> slot, a position that removals do not shift. A song's index is its
+    // slot minus the removed slots before it, counted by a Fenwick tree
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int[] removedSlots = new int[1];
+    private int removedCount;
+    private int nextSlot;
+    // Restored playlists build the positions on first use
+    private boolean positionsPending;
+
+    // Cached per version, rebuilt lazily after a change
+    private List<Song> snapshot;
+    private long snapshotVersion = -1;
 
     public PlaylistEntity(String name) {
         this.id = UUID.randomUUID().toString();
         this.name = name;
         this.songs = new ArrayList<>();
+        this.songsView = Collections.unmodifiableList(songs);
     }
 
     public PlaylistEntity(String id, String name, List<Song> songs) {
         this.id = id;
         this.name = name;
-        this.songs = new ArrayList<>(songs);
+        this.songs = new ArrayList<>(songs.size());
+        this.songsView = Collections.unmodifiableList(this.songs);
+        addAll(songs);
+    }
+
+    private PlaylistEntity(String id, String name, ArrayList<Song> distinctSongs) {
+        this.id = id;
+        this.name = name;
+        this.songs = distinctSongs;
+        this.songsView = Collections.unmodifiableList(distinctSongs);
+        this.positionsPending = !distinctSongs.isEmpty();
+    }
+
+    /**
+     * Recreates a saved playlist. The songs must already be distinct; the
+     * lookup by song id is only built once the playlist is searched or edited,
+     * so restoring many playlists stays cheap.
+     */
+    public static PlaylistEntity restore(String id, String name, List<Song> distinctSongs) {
+        return new PlaylistEntity(id, name, new ArrayList<>(distinctSongs));
     }
 
     public String getId() {
@@ -33,28 +74,191 @@ public class PlaylistEntity {
         this.name = name;
     }
 
+    // Immutable copy of the songs, shared by all callers until the playlist changes
     public List<Song> getSongs() {
-        return new ArrayList<>(songs);
+        if (snapshotVersion != version) {
+            snapshot = Collections.unmodifiableList(new ArrayList<>(songs));
+            snapshotVersion = version;
+        }
+        return snapshot;
+    }
+
+    // The songs and change counters as of now, for reading on another thread
+    public Snapshot snapshot() {
+        return new Snapshot(this, getSongs(), version, removalVersion, replacementVersion);
+    }
+
+    // Read-only live view, reflects later changes; do not hold across modifications
+    public List<Song> getSongsView() {
+        return songsView;
+    }
+
+    public Song getSongAt(int index) {
+        if (index >= 0 && index < songs.size()) {
+            return songs.get(index);
+        }
+        return null;
+    }
+
+    public int indexOf(Song song) {
+        if (song == null) {
+            return -1;
+        }
+        ensurePositions();
+        Integer slot = positions.get(song.getId());
+        if (slot == null) {
+            return -1;
+        }
+        return slot - removedBefore(slot);
+    }
+
+    public boolean containsSong(Song song) {
+        if (song == null) {
+            return false;
+        }
+        ensurePositions();
+        return positions.containsKey(song.getId());
     }
 
     public void addSong(Song song) {
-        if (song != null && !songs.contains(song)) {
+        ensurePositions();
+        if (song != null && positions.putIfAbsent(song.getId(), nextSlot) == null) {
             songs.add(song);
+            takeSlot();
+            version++;
         }
     }
 
+    // Appends the songs not already in the playlist and returns them
+    public List<Song> addAll(Collection<Song> newSongs) {
+        return addAll(newSongs, null);
+    }
+
+    /**
+     * Appends the songs not already in the playlist and returns them. Songs
+     * left out because their id is here with another file, as after a move,
+     * are collected in moved when it is not null.
+     */
+    public List<Song> addAll(Collection<Song> newSongs, List<Song> moved) {
+        ensurePositions();
+        List<Song> added = new ArrayList<>(newSongs.size());
+        songs.ensureCapacity(songs.size() + newSongs.size());
+        for (Song song : newSongs) {
+            if (song == null) {
+                continue;
+            }
+            if (positions.putIfAbsent(song.getId(), nextSlot) == null) {
+                songs.add(song);
+                takeSlot();
+                added.add(song);
+            } else if (moved != null && hasMoved(song)) {
+                moved.add(song);
+            }
+        }
+        if (!added.isEmpty()) {
+            version++;
+        }
+        return added;
+    }
+
+    // True if the song's id is in the playlist with a different file
+    public boolean hasMoved(Song song) {
+        int index = indexOf(song);
+        return index >= 0 && !songs.get(index).getFilePath().equals(song.getFilePath());
+    }
+
+    /**
+     * Puts the song in place of the one with the same id if that one points at
+     * a different file, as happens when a file is moved. Returns the song it
+     * replaced, or null.
+     */
+    public Song relocateSong(Song song) {
+        int index = indexOf(song);
+        if (index < 0 || songs.get(index).getFilePath().equals(song.getFilePath())) {
+            return null;
+        }
+        Song replaced = songs.set(index, song);
+        version++;
+        replacementVersion++;
+        return replaced;
+    }
+
     public void removeSong(Song song) {
-        songs.remove(song);
+        removeSongAt(indexOf(song));
     }
 
     public void removeSongAt(int index) {
         if (index >= 0 && index < songs.size()) {
-            songs.remove(index);
+            ensurePositions();
+            // The list still shifts its tail, but no position has to be rewritten
+            Song removed = songs.remove(index);
+            int slot = positions.remove(removed.getId());
+            for (int i = slot + 1; i < removedSlots.length; i += i & -i) {
+                removedSlots[i]++;
+            }
+            if (++removedCount > Math.max(64, songs.size())) {
+                renumberPositions(); // slots are mostly gaps by now
+            }
+            version++;
+            removalVersion++;
         }
     }
 
     public void clearSongs() {
         songs.clear();
+        positions.clear();
+        positionsPending = false;
+        renumberPositions();
+        version++;
+        removalVersion++;
+    }
+
+    private void ensurePositions() {
+        if (positionsPending) {
+            positionsPending = false;
+            renumberPositions();
+        }
+    }
+
+    // Gives every song its index as its slot and forgets the removed slots
+    private void renumberPositions() {
+        for (int i = 0; i < songs.size(); i++) {
+            positions.put(songs.get(i).getId(), i);
+        }
+        nextSlot = songs.size();
+        removedCount = 0;
+        removedSlots = new int[Integer.highestOneBit(Math.max(16, songs.size())) * 2 + 1];
+    }
+
+    // Advances past the slot just given to an appended song, renumbering when the tree is full
+    private void takeSlot() {
+        if (++nextSlot >= removedSlots.length) {
+            renumberPositions();
+        }
+    }
+
+    // Number of removed slots below the slot
+    private int removedBefore(int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += removedSlots[i];
+        }
+        return count;
+    }
+
+    // Bumped on every change to the song list
+    public long getVersion() {
+        return version;
+    }
+
+    // Bumped only by changes other than appends
+    public long getRemovalVersion() {
+        return removalVersion;
+    }
+
+    // Bumped when a song is swapped for another instance at the same position
+    public long getReplacementVersion() {
+        return replacementVersion;
     }
 
     public int getSongCount() {
@@ -70,6 +274,46 @@ public class PlaylistEntity {
         return name + " (" + songs.size() + " songs)";
     }
 
+    /**
+     * Immutable state of a playlist at one version.
+     */
+    public static final class Snapshot {
+        private final PlaylistEntity playlist;
+        private final List<Song> songs;
+        private final long version;
+        private final long removalVersion;
+        private final long replacementVersion;
+
+        private Snapshot(PlaylistEntity playlist, List<Song> songs, long version, long removalVersion,
+                         long replacementVersion) {
+            this.playlist = playlist;
+            this.songs = songs;
+            this.version = version;
+            this.removalVersion = removalVersion;
+            this.replacementVersion = replacementVersion;
+        }
+
+        public PlaylistEntity getPlaylist() {
+            return playlist;
+        }
+
+        public List<Song> getSongs() {
+            return songs;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getRemovalVersion() {
+            return removalVersion;
+        }
+
+        public long getReplacementVersion() {
+            return replacementVersion;
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
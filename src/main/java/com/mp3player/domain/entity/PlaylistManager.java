@@ -7,6 +7,8 @@ import java.util.Optional;
 public class PlaylistManager {
     private final List<PlaylistEntity> playlists;
     private PlaylistEntity currentPlaylist;
+    private boolean shuffle;
+    private boolean repeat;
 
     public PlaylistManager() {
         this.playlists = new ArrayList<>();
@@ -16,12 +18,29 @@ public class PlaylistManager {
         currentPlaylist = defaultPlaylist;
     }
 
+    // Restores saved state; falls back to the first playlist if the current one is missing
+    public PlaylistManager(List<PlaylistEntity> playlists, PlaylistEntity currentPlaylist) {
+        this.playlists = new ArrayList<>(playlists);
+        if (this.playlists.isEmpty()) {
+            this.playlists.add(new PlaylistEntity("My Playlist"));
+        }
+        this.currentPlaylist = currentPlaylist != null && this.playlists.contains(currentPlaylist)
+                ? currentPlaylist
+                : this.playlists.get(0);
+    }
+
     public PlaylistEntity createPlaylist(String name) {
         PlaylistEntity playlist = new PlaylistEntity(name);
         playlists.add(playlist);
         return playlist;
     }
 
+    public void addPlaylist(PlaylistEntity playlist) {
+        if (playlist != null && !playlists.contains(playlist)) {
+            playlists.add(playlist);
+        }
+    }
+
     public boolean deletePlaylist(PlaylistEntity playlist) {
         if (playlists.size() <= 1) {
             // Don't allow deleting the last playlist
@@ -44,6 +63,19 @@ public class PlaylistManager {
         return false;
     }
 
+    // Points every playlist holding the song at its new file; the song keeps its favorite state
+    public boolean relocateSong(Song song) {
+        boolean relocated = false;
+        for (PlaylistEntity playlist : playlists) {
+            Song replaced = playlist.relocateSong(song);
+            if (replaced != null) {
+                song.setFavorite(replaced.isFavorite());
+                relocated = true;
+            }
+        }
+        return relocated;
+    }
+
     public void setCurrentPlaylist(PlaylistEntity playlist) {
         if (playlist != null && playlists.contains(playlist)) {
             currentPlaylist = playlist;
@@ -93,4 +125,20 @@ public class PlaylistManager {
     public void removeSongFromCurrentPlaylist(Song song) {
         currentPlaylist.removeSong(song);
     }
+
+    public boolean isShuffle() {
+        return shuffle;
+    }
+
+    public void setShuffle(boolean shuffle) {
+        this.shuffle = shuffle;
+    }
+
+    public boolean isRepeat() {
+        return repeat;
+    }
+
+    public void setRepeat(boolean repeat) {
+        this.repeat = repeat;
+    }
 }
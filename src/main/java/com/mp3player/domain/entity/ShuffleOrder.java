@@ -0,0 +1,120 @@
+package com.mp3player.domain.entity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Random play order over the songs of a playlist, kept as playlist indexes in
+ * an int array. The order is drawn one step at a time (an incremental
+ * Fisher-Yates shuffle): positions before {@code drawn} are fixed, which keeps
+ * the history for going back, and the rest of the array is the pool the next
+ * songs are drawn from. Turning shuffle on therefore costs no shuffling up
+ * front, and the order takes 4 bytes per song.
+ */
+public class ShuffleOrder {
+    private final Random random;
+    private int[] order = new int[0];
+    private int size;
+    private int drawn;
+
+    public ShuffleOrder(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Starts a new order over {@code size} songs. The order begins with the
+     * song at playlist index {@code first}, or a random song when it is negative.
+     */
+    public void reset(int size, int first) {
+        if (order.length < size || order.length > 2 * size) {
+            order = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        this.size = size;
+        this.drawn = 0;
+        if (first >= 0 && first < size) {
+            swap(0, first);
+            drawn = 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Playlist index of the song at the given position of the order
+    public int get(int position) {
+        if (position < 0 || position >= size) {
+            return -1;
+        }
+        while (drawn <= position) {
+            swap(drawn, drawn + random.nextInt(size - drawn));
+            drawn++;
+        }
+        return order[position];
+    }
+
+    /**
+     * Position of the song at the given playlist index. A song that has not
+     * been drawn yet is drawn next, so it is not played a second time later.
+     */
+    public int positionOf(int index) {
+        for (int position = 0; position < size; position++) {
+            if (order[position] == index) {
+                if (position >= drawn) {
+                    swap(drawn, position);
+                    position = drawn++;
+                }
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    // Songs appended at playlist indexes from (inclusive) to to (exclusive) join the pool
+    public void addRange(int from, int to) {
+        int count = to - from;
+        if (count <= 0) {
+            return;
+        }
+        if (size + count > order.length) {
+            order = Arrays.copyOf(order, Math.max(size + count, order.length + (order.length >> 1)));
+        }
+        for (int index = from; index < to; index++) {
+            order[size++] = index;
+        }
+    }
+
+    /**
+     * Drops the song that was at the given playlist index; later playlist
+     * indexes move down by one. Returns the position it had in the order, or -1.
+     */
+    public int remove(int index) {
+        int removedPosition = -1;
+        for (int position = 0; position < size; position++) {
+            int value = order[position];
+            if (value == index) {
+                removedPosition = position;
+            } else if (value > index) {
+                order[position] = value - 1;
+            }
+        }
+        if (removedPosition < 0) {
+            return -1;
+        }
+        System.arraycopy(order, removedPosition + 1, order, removedPosition, size - removedPosition - 1);
+        size--;
+        if (removedPosition < drawn) {
+            drawn--;
+        }
+        return removedPosition;
+    }
+
+    private void swap(int i, int j) {
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+    }
+}
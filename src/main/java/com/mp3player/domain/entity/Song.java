@@ -7,14 +7,20 @@ public class Song {
     private final String id;
     private final String title;
     private final String artist;
+    private final String album;
     private final String filePath;
     private final Duration duration;
     private boolean isFavorite;
 
     public Song(String id, String title, String artist, String filePath, Duration duration) {
+        this(id, title, artist, "", filePath, duration);
+    }
+
+    public Song(String id, String title, String artist, String album, String filePath, Duration duration) {
         this.id = id;
         this.title = title;
         this.artist = artist;
+        this.album = album;
         this.filePath = filePath;
         this.duration = duration;
         this.isFavorite = false;
@@ -32,6 +38,10 @@ public class Song {
         return artist;
     }
 
+    public String getAlbum() {
+        return album;
+    }
+
     public String getFilePath() {
         return filePath;
     }
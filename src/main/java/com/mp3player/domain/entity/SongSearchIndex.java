@@ -0,0 +1,322 @@
+package com.mp3player.domain.entity;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Search index over the songs of a playlist. Title, artist and album are
+ * normalized once (lower case, accents removed) and every trigram of the
+ * normalized text points back to the songs containing it. A query only checks
+ * the songs listed under its rarest trigram, and a query that extends the
+ * previous one only re-checks the previous matches.
+ */
+public class SongSearchIndex {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final char FIELD_SEPARATOR = '\n';
+    private static final char[] FOLD_TABLE = buildFoldTable();
+
+    private final List<Song> songs = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+    private int[] titleLengths = new int[16];
+    private final TrigramTable trigrams = new TrigramTable();
+
+    private PlaylistEntity source;
+    private long indexedVersion = -1;
+    private long indexedRemovalVersion = -1;
+    private long indexedReplacementVersion = -1;
+    private long generation;
+
+    // Matches of the previous query, in song order, for incremental refinement
+    private String lastQuery;
+    private int[] lastMatches;
+    private int lastMatchCount;
+    private long lastGeneration = -1;
+
+    /**
+     * Brings the index up to date with the playlist. Must be called from the
+     * thread that modifies the playlist.
+     */
+    public void sync(PlaylistEntity entity) {
+        sync(entity.snapshot());
+    }
+
+    /**
+     * Brings the index up to date with a snapshot of the playlist, so it can
+     * run on any thread. Appended songs are indexed incrementally; anything
+     * else triggers a rebuild.
+     */
+    public synchronized void sync(PlaylistEntity.Snapshot snapshot) {
+        PlaylistEntity entity = snapshot.getPlaylist();
+        if (entity == source && snapshot.getVersion() == indexedVersion) {
+            return;
+        }
+
+        List<Song> current = snapshot.getSongs();
+        if (entity != source || snapshot.getRemovalVersion() != indexedRemovalVersion
+                || snapshot.getReplacementVersion() != indexedReplacementVersion
+                || current.size() < songs.size()) {
+            clear();
+            source = entity;
+        }
+
+        for (int i = songs.size(); i < current.size(); i++) {
+            add(current.get(i));
+        }
+
+        indexedVersion = snapshot.getVersion();
+        indexedRemovalVersion = snapshot.getRemovalVersion();
+        indexedReplacementVersion = snapshot.getReplacementVersion();
+        generation++;
+    }
+
+    public synchronized List<Song> search(String query) {
+        String normalized = normalize(query == null ? "" : query.trim());
+        if (normalized.isEmpty()) {
+            return new ArrayList<>(songs);
+        }
+
+        int[] candidates;
+        int candidateCount;
+        if (lastQuery != null && lastGeneration == generation && normalized.contains(lastQuery)) {
+            // Query was refined: only the previous matches can still match
+            candidates = lastMatches;
+            candidateCount = lastMatchCount;
+        } else if (normalized.length() >= 3) {
+            Postings rarest = rarestPostings(normalized);
+            if (rarest == null) {
+                return rememberAndRank(normalized, new int[0], 0);
+            }
+            candidates = rarest.ordinals;
+            candidateCount = rarest.size;
+        } else {
+            candidates = null;
+            candidateCount = songs.size();
+        }
+
+        int[] matches = new int[Math.min(candidateCount, 64)];
+        int matchCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int ordinal = candidates != null ? candidates[i] : i;
+            if (keys.get(ordinal).contains(normalized)) {
+                if (matchCount == matches.length) {
+                    matches = Arrays.copyOf(matches, Math.max(16, matchCount * 2));
+                }
+                matches[matchCount++] = ordinal;
+            }
+        }
+
+        return rememberAndRank(normalized, matches, matchCount);
+    }
+
+    public static String normalize(String text) {
+        StringBuilder folded = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char replacement = fold(c);
+            if (replacement != c && folded == null) {
+                folded = new StringBuilder(text.length());
+                folded.append(text, 0, i);
+            }
+            if (folded != null && replacement != 0) {
+                folded.append(replacement);
+            }
+        }
+        return folded != null ? folded.toString() : text;
+    }
+
+    // Lower case without accents; 0 means the character is dropped (combining marks)
+    private static char fold(char c) {
+        if (c < FOLD_TABLE.length) {
+            return FOLD_TABLE[c];
+        }
+        if (Character.getType(c) == Character.NON_SPACING_MARK) {
+            return 0;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static char[] buildFoldTable() {
+        char[] table = new char[0x250]; // Basic Latin through Latin Extended-B
+        for (char c = 0; c < table.length; c++) {
+            String lower = String.valueOf(c).toLowerCase(Locale.ROOT);
+            String base = COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+            table[c] = base.length() == 1 ? base.charAt(0) : (lower.length() == 1 ? lower.charAt(0) : c);
+        }
+        return table;
+    }
+
+    private static String normalizeField(String value) {
+        return value == null ? "" : normalize(value);
+    }
+
+    private List<Song> rememberAndRank(String normalized, int[] matches, int matchCount) {
+        lastQuery = normalized;
+        lastMatches = matches;
+        lastMatchCount = matchCount;
+        lastGeneration = generation;
+
+        // Rank in four buckets: title prefix, artist prefix, word start, anywhere
+        List<List<Song>> buckets = new ArrayList<>(4);
+        for (int i = 0; i < 4; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int i = 0; i < matchCount; i++) {
+            int ordinal = matches[i];
+            buckets.get(rank(ordinal, normalized)).add(songs.get(ordinal));
+        }
+
+        List<Song> result = new ArrayList<>(matchCount);
+        for (List<Song> bucket : buckets) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    private int rank(int ordinal, String query) {
+        String key = keys.get(ordinal);
+        if (key.startsWith(query)) {
+            return 0;
+        }
+        if (key.startsWith(query, titleLengths[ordinal] + 1)) {
+            return 1;
+        }
+        int index = key.indexOf(query);
+        while (index > 0) {
+            if (!Character.isLetterOrDigit(key.charAt(index - 1))) {
+                return 2;
+            }
+            index = key.indexOf(query, index + 1);
+        }
+        return 3;
+    }
+
+    private Postings rarestPostings(String query) {
+        Postings rarest = null;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            Postings postings = trigrams.get(trigram(query, i));
+            if (postings == null) {
+                return null;
+            }
+            if (rarest == null || postings.size < rarest.size) {
+                rarest = postings;
+            }
+        }
+        return rarest;
+    }
+
+    private void add(Song song) {
+        int ordinal = songs.size();
+        String title = normalizeField(song.getTitle());
+        String artist = normalizeField(song.getArtist());
+        String album = normalizeField(song.getAlbum());
+        String key = title + FIELD_SEPARATOR + artist + FIELD_SEPARATOR + album;
+
+        songs.add(song);
+        keys.add(key);
+        if (ordinal == titleLengths.length) {
+            titleLengths = Arrays.copyOf(titleLengths, ordinal * 2);
+        }
+        titleLengths[ordinal] = title.length();
+
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            trigrams.getOrCreate(trigram(key, i)).add(ordinal);
+        }
+    }
+
+    private void clear() {
+        songs.clear();
+        keys.clear();
+        trigrams.clear();
+        lastQuery = null;
+        lastMatches = null;
+        lastMatchCount = 0;
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static class Postings {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void add(int ordinal) {
+            // Ordinals arrive in increasing order, so repeats within one key are adjacent
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+    }
+
+    // Open addressing map from packed trigram to postings, avoids boxing every trigram
+    private static class TrigramTable {
+        private long[] keys = new long[1024];
+        private Postings[] values = new Postings[1024];
+        private int size;
+
+        Postings get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+
+            Postings postings = new Postings();
+            keys[slot] = key;
+            values[slot] = postings;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return postings;
+        }
+
+        void clear() {
+            keys = new long[1024];
+            values = new Postings[1024];
+            size = 0;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mp3player.domain.entity;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Peak overview of a track: for each bin the lowest and highest sample, as
+ * signed bytes, at several zoom levels. Level 0 has the most bins and each
+ * further level merges pairs of bins of the one before.
+ */
+public class Waveform {
+    private final int[] binCounts;
+    private final int[] offsets;
+    // Per level, min/max byte pairs for each bin
+    private final ByteBuffer peaks;
+
+    public Waveform(int[] binCounts, ByteBuffer peaks) {
+        this.binCounts = binCounts.clone();
+        this.offsets = new int[binCounts.length];
+        this.peaks = peaks;
+        int offset = 0;
+        for (int level = 0; level < binCounts.length; level++) {
+            offsets[level] = offset;
+            offset += 2 * binCounts[level];
+        }
+    }
+
+    public int getLevelCount() {
+        return binCounts.length;
+    }
+
+    public int getBinCount(int level) {
+        return binCounts[level];
+    }
+
+    public int getMin(int level, int bin) {
+        return peaks.get(offsets[level] + 2 * bin);
+    }
+
+    public int getMax(int level, int bin) {
+        return peaks.get(offsets[level] + 2 * bin + 1);
+    }
+
+    // Coarsest level that still has at least the given number of bins
+    public int levelFor(int bins) {
+        for (int level = binCounts.length - 1; level > 0; level--) {
+            if (binCounts[level] >= bins) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    public int[] getBinCounts() {
+        return binCounts.clone();
+    }
+
+    // All levels back to back, read-only
+    public ByteBuffer getPeaks() {
+        return peaks.asReadOnlyBuffer().position(0);
+    }
+}
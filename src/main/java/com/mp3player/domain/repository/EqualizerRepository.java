@@ -0,0 +1,7 @@
+package com.mp3player.domain.repository;
+
+public interface EqualizerRepository {
+    void setEqualizerEnabled(boolean enabled);
+    void setEqualizerBand(int bandIndex, double gain);
+    void setAllEqualizerBands(double[] gains);
+}
@@ -0,0 +1,20 @@
+package com.mp3player.domain.repository;
+
+import com.mp3player.domain.entity.Loudness;
+import com.mp3player.domain.entity.Song;
+
+import java.util.List;
+
+public interface LoudnessRepository {
+    // Measured loudness of the song, or null if it has not been analyzed yet
+    Loudness getTrackLoudness(Song song);
+
+    // Combined loudness of the song's album, or null if unknown or the song has no album
+    Loudness getAlbumLoudness(Song song);
+
+    // Analyzes the songs that have no up-to-date measurement in the background
+    void analyze(List<Song> songs);
+
+    // Analysis throughput over the time the analyzer was busy
+    double getTracksPerMinute();
+}
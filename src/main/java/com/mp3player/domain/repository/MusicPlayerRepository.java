@@ -9,10 +9,13 @@ public interface MusicPlayerRepository {
     void resume();
     void stop();
     void setVolume(double volume);
+    // Linear loudness normalization factor applied on top of the volume
+    void setTrackGain(double gain);
     void setPlaybackSpeed(double speed);
     void seek(Duration position);
     Duration getCurrentTime();
     Duration getTotalDuration();
     boolean isPlaying();
     boolean isPaused();
+    void setOnEndOfMediaListener(Runnable listener);
 }
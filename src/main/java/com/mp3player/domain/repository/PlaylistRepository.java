@@ -1,11 +1,25 @@
 package com.mp3player.domain.repository;
 
-import com.mp3player.domain.entity.Playlist;
+import com.mp3player.domain.entity.PlaybackSession;
+import com.mp3player.domain.entity.PlaylistChange;
+import com.mp3player.domain.entity.PlaylistManager;
 import com.mp3player.domain.entity.Song;
+import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 public interface PlaylistRepository {
-    void savePlaylist(Playlist playlist);
-    Playlist loadPlaylist();
+    PlaylistManager loadPlaylists();
+    void recordPlaylistChange(PlaylistChange change, PlaylistManager state);
+    PlaybackSession loadPlaybackSession();
+    void savePlaybackSession(PlaybackSession session);
     List<Song> loadSongsFromDirectory(String directoryPath);
+    Song loadSongFromFile(String filePath);
+    // The progress consumer, if any, gets the scanned fraction from the scanning threads
+    void scanSongsFromDirectory(String directoryPath, Consumer<List<Song>> batchConsumer,
+                                DoubleConsumer progressConsumer);
+    void readPlaylistFile(String filePath, Consumer<List<Song>> batchConsumer) throws IOException;
+    void writePlaylistFile(List<Song> songs, String filePath, boolean relativePaths) throws IOException;
+    void cancelScan();
 }
@@ -0,0 +1,15 @@
+package com.mp3player.domain.repository;
+
+import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.entity.Waveform;
+
+import java.util.function.Consumer;
+
+public interface WaveformRepository {
+    /**
+     * Looks up the song's waveform, computing it in the background when it is
+     * not cached yet. The consumer is called on a background thread, and not
+     * at all if the song cannot be decoded.
+     */
+    void loadWaveform(Song song, Consumer<Waveform> onLoaded);
+}
@@ -0,0 +1,20 @@
+package com.mp3player.domain.usecase;
+
+import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.repository.LoudnessRepository;
+
+import java.util.List;
+
+public class AnalyzeLoudnessUseCase {
+    private final LoudnessRepository repository;
+
+    public AnalyzeLoudnessUseCase(LoudnessRepository repository) {
+        this.repository = repository;
+    }
+
+    public void execute(List<Song> songs) {
+        if (songs != null && !songs.isEmpty()) {
+            repository.analyze(songs);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.mp3player.domain.usecase;
 import com.mp3player.domain.entity.Song;
 import com.mp3player.domain.repository.PlaylistRepository;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 public class LoadSongsUseCase {
     private final PlaylistRepository repository;
@@ -14,4 +16,16 @@ public class LoadSongsUseCase {
     public List<Song> execute(String directoryPath) {
         return repository.loadSongsFromDirectory(directoryPath);
     }
+
+    public void execute(String directoryPath, Consumer<List<Song>> batchConsumer, DoubleConsumer progressConsumer) {
+        repository.scanSongsFromDirectory(directoryPath, batchConsumer, progressConsumer);
+    }
+
+    public Song executeForFile(String filePath) {
+        return repository.loadSongFromFile(filePath);
+    }
+
+    public void cancel() {
+        repository.cancelScan();
+    }
 }
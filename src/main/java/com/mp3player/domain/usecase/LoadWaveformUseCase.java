@@ -0,0 +1,22 @@
+package com.mp3player.domain.usecase;
+
+import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.entity.Waveform;
+import com.mp3player.domain.repository.WaveformRepository;
+
+import java.util.function.Consumer;
+
+public class LoadWaveformUseCase {
+    private final WaveformRepository repository;
+
+    public LoadWaveformUseCase(WaveformRepository repository) {
+        this.repository = repository;
+    }
+
+    // The consumer may be called on a background thread
+    public void execute(Song song, Consumer<Waveform> onLoaded) {
+        if (song != null) {
+            repository.loadWaveform(song, onLoaded);
+        }
+    }
+}
@@ -1,18 +1,57 @@
 package com.mp3player.domain.usecase;
 
+import com.mp3player.domain.entity.Loudness;
 import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.repository.LoudnessRepository;
 import com.mp3player.domain.repository.MusicPlayerRepository;
 
+import java.time.Duration;
+
 public class PlaySongUseCase {
+    // Reference level songs are normalized to, as in ReplayGain 2
+    private static final double TARGET_LUFS = -18.0;
+
+    public enum Normalization { OFF, TRACK, ALBUM }
+
     private final MusicPlayerRepository repository;
+    private final LoudnessRepository loudnessRepository;
+    private final Normalization normalization;
 
     public PlaySongUseCase(MusicPlayerRepository repository) {
+        this(repository, null, Normalization.OFF);
+    }
+
+    public PlaySongUseCase(MusicPlayerRepository repository, LoudnessRepository loudnessRepository,
+                           Normalization normalization) {
         this.repository = repository;
+        this.loudnessRepository = loudnessRepository;
+        this.normalization = loudnessRepository != null ? normalization : Normalization.OFF;
     }
 
     public void execute(Song song) {
+        execute(song, null);
+    }
+
+    // Starts the song part way through, e.g. where it stopped last time
+    public void execute(Song song, Duration startPosition) {
         if (song != null) {
+            repository.setTrackGain(gainFor(song));
             repository.play(song);
+            if (startPosition != null && !startPosition.isZero()) {
+                repository.seek(startPosition);
+            }
+        }
+    }
+
+    // Linear gain for the song; unity until it has been analyzed
+    private double gainFor(Song song) {
+        if (normalization == Normalization.OFF) {
+            return 1.0;
+        }
+        Loudness loudness = normalization == Normalization.ALBUM ? loudnessRepository.getAlbumLoudness(song) : null;
+        if (loudness == null) {
+            loudness = loudnessRepository.getTrackLoudness(song);
         }
+        return loudness != null ? Math.pow(10.0, loudness.gainDbFor(TARGET_LUFS) / 20.0) : 1.0;
     }
 }
@@ -0,0 +1,18 @@
+package com.mp3player.domain.usecase;
+
+import com.mp3player.domain.entity.PlaylistChange;
+import com.mp3player.domain.entity.PlaylistManager;
+import com.mp3player.domain.repository.PlaylistRepository;
+
+public class RecordPlaylistChangeUseCase {
+    private final PlaylistRepository repository;
+
+    public RecordPlaylistChangeUseCase(PlaylistRepository repository) {
+        this.repository = repository;
+    }
+
+    // The manager must already include the change
+    public void execute(PlaylistChange change, PlaylistManager state) {
+        repository.recordPlaylistChange(change, state);
+    }
+}
@@ -0,0 +1,17 @@
+package com.mp3player.domain.usecase;
+
+import com.mp3player.domain.entity.PlaybackSession;
+import com.mp3player.domain.repository.PlaylistRepository;
+
+public class RestorePlaybackSessionUseCase {
+    private final PlaylistRepository repository;
+
+    public RestorePlaybackSessionUseCase(PlaylistRepository repository) {
+        this.repository = repository;
+    }
+
+    // Null when nothing was played yet
+    public PlaybackSession execute() {
+        return repository.loadPlaybackSession();
+    }
+}
@@ -0,0 +1,16 @@
+package com.mp3player.domain.usecase;
+
+import com.mp3player.domain.entity.PlaylistManager;
+import com.mp3player.domain.repository.PlaylistRepository;
+
+public class RestorePlaylistsUseCase {
+    private final PlaylistRepository repository;
+
+    public RestorePlaylistsUseCase(PlaylistRepository repository) {
+        this.repository = repository;
+    }
+
+    public PlaylistManager execute() {
+        return repository.loadPlaylists();
+    }
+}
@@ -0,0 +1,16 @@
+package com.mp3player.domain.usecase;
+
+import com.mp3player.domain.entity.PlaybackSession;
+import com.mp3player.domain.repository.PlaylistRepository;
+
+public class SavePlaybackSessionUseCase {
+    private final PlaylistRepository repository;
+
+    public SavePlaybackSessionUseCase(PlaylistRepository repository) {
+        this.repository = repository;
+    }
+
+    public void execute(PlaybackSession session) {
+        repository.savePlaybackSession(session);
+    }
+}
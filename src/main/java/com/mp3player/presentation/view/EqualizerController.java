@@ -1,6 +1,6 @@
 package com.mp3player.presentation.view;
 
-import com.mp3player.data.repository.JavaFXMusicPlayerRepository;
+import com.mp3player.domain.repository.EqualizerRepository;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
@@ -12,7 +12,7 @@ public class EqualizerController {
     @FXML private ComboBox<String> presetComboBox;
     @FXML private CheckBox enableCheckBox;
 
-    private JavaFXMusicPlayerRepository playerRepository;
+    private EqualizerRepository playerRepository;
 
     // Frequency band sliders
     @FXML private Slider slider32Hz;
@@ -98,7 +98,7 @@ public class EqualizerController {
         });
     }
 
-    public void setPlayerRepository(JavaFXMusicPlayerRepository repository) {
+    public void setPlayerRepository(EqualizerRepository repository) {
         this.playerRepository = repository;
     }
 
@@ -2,35 +2,49 @@ package com.mp3player.presentation.view;
 
 import java.io.File;
 
+import com.mp3player.StartupTimer;
+import com.mp3player.data.audio.StreamingAudioPlayerRepository;
+import com.mp3player.data.repository.FileLoudnessRepository;
 import com.mp3player.data.repository.FilePlaylistRepository;
+import com.mp3player.data.repository.FileWaveformRepository;
 import com.mp3player.data.repository.JavaFXMusicPlayerRepository;
 import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.repository.EqualizerRepository;
+import com.mp3player.domain.repository.MusicPlayerRepository;
+import com.mp3player.domain.usecase.AnalyzeLoudnessUseCase;
 import com.mp3player.domain.usecase.LoadPlaylistFileUseCase;
 import com.mp3player.domain.usecase.LoadSongsUseCase;
+import com.mp3player.domain.usecase.LoadWaveformUseCase;
 import com.mp3player.domain.usecase.PauseSongUseCase;
 import com.mp3player.domain.usecase.PlaySongUseCase;
+import com.mp3player.domain.usecase.RecordPlaylistChangeUseCase;
+import com.mp3player.domain.usecase.RestorePlaybackSessionUseCase;
+import com.mp3player.domain.usecase.RestorePlaylistsUseCase;
 import com.mp3player.domain.usecase.ResumeSongUseCase;
+import com.mp3player.domain.usecase.SavePlaybackSessionUseCase;
 import com.mp3player.domain.usecase.SavePlaylistUseCase;
 import com.mp3player.domain.usecase.SetPlaybackSpeedUseCase;
 import com.mp3player.domain.usecase.SetVolumeUseCase;
 import com.mp3player.domain.usecase.StopSongUseCase;
 import com.mp3player.presentation.viewmodel.MusicPlayerViewModel;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.BooleanBinding;
 import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.Slider;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.ToggleButton;
+import javafx.scene.layout.StackPane;
 import javafx.stage.DirectoryChooser;
-import javafx.util.Duration;
 
 public class MainController {
     // UI Components
@@ -46,6 +60,8 @@ public class MainController {
     @FXML private Label volumeIcon;
     @FXML private Label speedLabel;
     @FXML private Slider progressSlider;
+    @FXML private StackPane progressPane;
+    @FXML private Canvas waveformCanvas;
     @FXML private Slider volumeSlider;
     @FXML private Slider speedSlider;
     @FXML private TextField searchField;
@@ -53,14 +69,22 @@ public class MainController {
     @FXML private ToggleButton repeatButton;
     @FXML private Button playPauseButton;
     @FXML private Button favoriteButton;
+    @FXML private ProgressIndicator loadingIndicator;
+    @FXML private Button cancelLoadButton;
+    @FXML private Label loadingLabel;
     @FXML private CheckMenuItem shuffleMenuItem;
     @FXML private CheckMenuItem repeatMenuItem;
     @FXML private CheckMenuItem equalizerMenuItem;
     @FXML private CheckMenuItem visualizerMenuItem;
+    @FXML private CheckMenuItem gaplessMenuItem;
 
     private MusicPlayerViewModel viewModel;
-    private JavaFXMusicPlayerRepository playerRepository;
-    private Timeline progressTimeline;
+    private MusicPlayerRepository playerRepository;
+    private JavaFXMusicPlayerRepository mediaPlayerRepository; // null when the streaming engine is used
+    private EqualizerRepository equalizerRepository;
+    private StreamingAudioPlayerRepository streamingRepository; // null when the JavaFX engine is used
+    private PlaybackClock playbackClock;
+    private WaveformRenderer waveformRenderer;
 
     @FXML
     public void initialize() {
@@ -68,9 +92,24 @@ public class MainController {
         setupBindings();
         setupProgressUpdater();
         setupSeekFunctionality();
+        setupWaveform();
         setupFavoriteButton();
     }
 
+    /**
+     * Restores the last session once the window is up: the last song first, so it
+     * can be resumed straight away, then the playlists in the background.
+     */
+    public void restoreState(StartupTimer startupTimer) {
+        viewModel.restorePlaybackSession();
+        startupTimer.mark("last song resumable");
+        viewModel.restorePlaylists(() -> startupTimer.mark("library restored (interactive)"));
+    }
+
+    public void shutdown() {
+        viewModel.savePlaybackSession();
+    }
+
     private void setupFavoriteButton() {
         // Use Label as graphic to avoid ellipsis issues
         Label heartLabel = new Label("♡");
@@ -80,21 +119,47 @@ public class MainController {
         favoriteButton.setContentDisplay(javafx.scene.control.ContentDisplay.GRAPHIC_ONLY);
     }
 
+    private static PlaySongUseCase.Normalization normalizationMode() {
+        String mode = System.getProperty("mp3player.normalization", "track");
+        try {
+            return PlaySongUseCase.Normalization.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error reading normalization mode: " + mode);
+            return PlaySongUseCase.Normalization.TRACK;
+        }
+    }
+
     private void setupDependencies() {
-        // Initialize repositories
-        playerRepository = new JavaFXMusicPlayerRepository();
+        // Initialize repositories (-Dmp3player.audio.engine=stream selects the Java Sound pipeline)
+        if ("stream".equals(System.getProperty("mp3player.audio.engine"))) {
+            streamingRepository = new StreamingAudioPlayerRepository();
+            playerRepository = streamingRepository;
+            equalizerRepository = streamingRepository;
+        } else {
+            mediaPlayerRepository = new JavaFXMusicPlayerRepository();
+            playerRepository = mediaPlayerRepository;
+            equalizerRepository = mediaPlayerRepository;
+        }
         FilePlaylistRepository playlistRepository = new FilePlaylistRepository();
+        FileLoudnessRepository loudnessRepository = new FileLoudnessRepository();
 
-        // Initialize use cases
-        PlaySongUseCase playSongUseCase = new PlaySongUseCase(playerRepository);
+        // Initialize use cases (-Dmp3player.normalization=track|album|off, track by default)
+        PlaySongUseCase playSongUseCase = new PlaySongUseCase(playerRepository, loudnessRepository,
+                normalizationMode());
         PauseSongUseCase pauseSongUseCase = new PauseSongUseCase(playerRepository);
         ResumeSongUseCase resumeSongUseCase = new ResumeSongUseCase(playerRepository);
         StopSongUseCase stopSongUseCase = new StopSongUseCase(playerRepository);
         SetVolumeUseCase setVolumeUseCase = new SetVolumeUseCase(playerRepository);
         SetPlaybackSpeedUseCase setPlaybackSpeedUseCase = new SetPlaybackSpeedUseCase(playerRepository);
         LoadSongsUseCase loadSongsUseCase = new LoadSongsUseCase(playlistRepository);
-        SavePlaylistUseCase savePlaylistUseCase = new SavePlaylistUseCase();
-        LoadPlaylistFileUseCase loadPlaylistFileUseCase = new LoadPlaylistFileUseCase();
+        SavePlaylistUseCase savePlaylistUseCase = new SavePlaylistUseCase(playlistRepository);
+        LoadPlaylistFileUseCase loadPlaylistFileUseCase = new LoadPlaylistFileUseCase(playlistRepository);
+        RestorePlaylistsUseCase restorePlaylistsUseCase = new RestorePlaylistsUseCase(playlistRepository);
+        RecordPlaylistChangeUseCase recordPlaylistChangeUseCase = new RecordPlaylistChangeUseCase(playlistRepository);
+        RestorePlaybackSessionUseCase restorePlaybackSessionUseCase = new RestorePlaybackSessionUseCase(playlistRepository);
+        SavePlaybackSessionUseCase savePlaybackSessionUseCase = new SavePlaybackSessionUseCase(playlistRepository);
+        LoadWaveformUseCase loadWaveformUseCase = new LoadWaveformUseCase(new FileWaveformRepository());
+        AnalyzeLoudnessUseCase analyzeLoudnessUseCase = new AnalyzeLoudnessUseCase(loudnessRepository);
 
         // Initialize ViewModel
         viewModel = new MusicPlayerViewModel(
@@ -106,7 +171,13 @@ public class MainController {
                 setPlaybackSpeedUseCase,
                 loadSongsUseCase,
                 savePlaylistUseCase,
-                loadPlaylistFileUseCase
+                loadPlaylistFileUseCase,
+                restorePlaylistsUseCase,
+                recordPlaylistChangeUseCase,
+                restorePlaybackSessionUseCase,
+                savePlaybackSessionUseCase,
+                loadWaveformUseCase,
+                analyzeLoudnessUseCase
         );
 
         // Setup auto-advance listener for when songs end
@@ -119,6 +190,15 @@ public class MainController {
                 viewModel.nextSong();
             }
         });
+
+        // Tell the player which song comes next so it can be prepared before the current one ends
+        if (mediaPlayerRepository != null) {
+            mediaPlayerRepository.setNextSongProvider(() ->
+                    viewModel.isRepeatProperty().get() ? viewModel.currentSongProperty().get() : viewModel.peekNextSong());
+            mediaPlayerRepository.setPreviousSongProvider(viewModel::peekPreviousSong);
+        } else {
+            gaplessMenuItem.setDisable(true);
+        }
     }
 
     private void setupBindings() {
@@ -227,20 +307,43 @@ public class MainController {
             updateFavoriteButton(newSong);
         });
 
+        // Show loading progress while songs are added or the library is restored in the background
+        BooleanBinding busy = viewModel.isLoadingProperty().or(viewModel.isRestoringProperty());
+        loadingIndicator.visibleProperty().bind(busy);
+        loadingIndicator.managedProperty().bind(busy);
+        loadingIndicator.progressProperty().bind(Bindings.when(viewModel.isRestoringProperty())
+                .then(ProgressIndicator.INDETERMINATE_PROGRESS)
+                .otherwise(viewModel.loadProgressProperty()));
+        loadingLabel.visibleProperty().bind(busy);
+        loadingLabel.managedProperty().bind(busy);
+        loadingLabel.textProperty().bind(Bindings.when(viewModel.isRestoringProperty())
+                .then("Restoring library…")
+                .otherwise(viewModel.loadedSongCountProperty().asString("%d songs")));
+        cancelLoadButton.visibleProperty().bind(viewModel.isLoadingProperty());
+        cancelLoadButton.managedProperty().bind(viewModel.isLoadingProperty());
+
         // Initialize volume display
         updateVolumeDisplay(volumeSlider.getValue());
     }
 
     private void setupProgressUpdater() {
-        progressTimeline = new Timeline(new KeyFrame(Duration.millis(100), event -> {
-            if (playerRepository.getMediaPlayer() != null) {
-                double currentSeconds = playerRepository.getCurrentTime().getSeconds();
-                double totalSeconds = playerRepository.getTotalDuration().getSeconds();
-                viewModel.updateProgress(currentSeconds, totalSeconds);
-            }
-        }));
-        progressTimeline.setCycleCount(Timeline.INDEFINITE);
-        progressTimeline.play();
+        // Position updates run only while playing
+        playbackClock = new PlaybackClock(playerRepository, viewModel);
+    }
+
+    private void setupWaveform() {
+        // The canvas fills the area behind the seek bar without taking part in its layout
+        waveformCanvas.setManaged(false);
+        waveformCanvas.widthProperty().bind(progressPane.widthProperty());
+        waveformCanvas.heightProperty().bind(progressPane.heightProperty());
+        waveformRenderer = new WaveformRenderer(waveformCanvas);
+
+        waveformCanvas.widthProperty().addListener((obs, oldVal, newVal) -> waveformRenderer.redraw());
+        waveformCanvas.heightProperty().addListener((obs, oldVal, newVal) -> waveformRenderer.redraw());
+        viewModel.waveformProperty().addListener((obs, oldWaveform, newWaveform) ->
+                waveformRenderer.setWaveform(newWaveform));
+        progressSlider.valueProperty().addListener((obs, oldVal, newVal) ->
+                waveformRenderer.setProgress(newVal.doubleValue() / progressSlider.getMax()));
     }
 
     private void setupSeekFunctionality() {
@@ -261,10 +364,11 @@ public class MainController {
     }
 
     private void seekToPosition(double sliderValue) {
-        if (playerRepository.getMediaPlayer() != null) {
+        if (playerRepository.isPlaying() || playerRepository.isPaused()) {
             double totalSeconds = playerRepository.getTotalDuration().getSeconds();
             double seekSeconds = (sliderValue / 100.0) * totalSeconds;
             playerRepository.seek(java.time.Duration.ofSeconds((long) seekSeconds));
+            playbackClock.refresh();
         }
     }
 
@@ -357,6 +461,11 @@ public class MainController {
         }
     }
 
+    @FXML
+    private void onCancelLoading() {
+        viewModel.cancelLoading();
+    }
+
     @FXML
     private void onPlayPause() {
         if (viewModel.isPlayingProperty().get()) {
@@ -393,6 +502,13 @@ public class MainController {
         viewModel.setRepeat(repeatButton.isSelected());
     }
 
+    @FXML
+    private void onToggleGapless() {
+        if (mediaPlayerRepository != null) {
+            mediaPlayerRepository.setGaplessEnabled(gaplessMenuItem.isSelected());
+        }
+    }
+
     @FXML
     private void onToggleFavorite() {
         Song currentSong = viewModel.currentSongProperty().get();
@@ -433,7 +549,8 @@ public class MainController {
 
     @FXML
     private void onExit() {
-        System.exit(0);
+        // Lets Main.stop() save the session before the JVM ends
+        javafx.application.Platform.exit();
     }
 
     @FXML
@@ -441,7 +558,7 @@ public class MainController {
         javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
         fileChooser.setTitle("Save Playlist");
         fileChooser.getExtensionFilters().add(
-            new javafx.stage.FileChooser.ExtensionFilter("M3U Playlist", "*.m3u")
+            new javafx.stage.FileChooser.ExtensionFilter("M3U Playlist", "*.m3u", "*.m3u8")
         );
         fileChooser.setInitialFileName("playlist.m3u");
 
@@ -462,19 +579,18 @@ public class MainController {
         javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
         fileChooser.setTitle("Load Playlist");
         fileChooser.getExtensionFilters().add(
-            new javafx.stage.FileChooser.ExtensionFilter("M3U Playlist", "*.m3u")
+            new javafx.stage.FileChooser.ExtensionFilter("Playlists", "*.m3u", "*.m3u8", "*.pls", "*.xspf")
         );
 
         File file = fileChooser.showOpenDialog(playlistView.getScene().getWindow());
 
         if (file != null) {
-            try {
-                viewModel.loadPlaylistFromFile(file.getAbsolutePath());
-                showInfo("Load Playlist", "Playlist loaded successfully!\n" +
-                         "Loaded " + viewModel.getSongs().size() + " songs.");
-            } catch (Exception e) {
-                showError("Load Playlist Error", "Failed to load playlist:\n" + e.getMessage());
-            }
+            viewModel.loadPlaylistFromFile(
+                file.getAbsolutePath(),
+                count -> showInfo("Load Playlist", "Playlist loaded successfully!\n" +
+                         "Loaded " + count + " songs."),
+                e -> showError("Load Playlist Error", "Failed to load playlist:\n" + e.getMessage())
+            );
         }
     }
 
@@ -493,7 +609,7 @@ public class MainController {
 
             // Get the controller and set the player repository
             EqualizerController controller = loader.getController();
-            controller.setPlayerRepository(playerRepository);
+            controller.setPlayerRepository(equalizerRepository);
 
             javafx.stage.Stage equalizerStage = new javafx.stage.Stage();
             equalizerStage.setTitle("Equalizer");
@@ -517,7 +633,10 @@ public class MainController {
 
             // Get the controller and set the player repository
             VisualizerController controller = loader.getController();
-            controller.setPlayerRepository(playerRepository);
+            controller.setPlayerRepository(mediaPlayerRepository);
+            if (streamingRepository != null) {
+                controller.setSpectrumAnalyzer(streamingRepository.getSpectrumAnalyzer());
+            }
 
             javafx.stage.Stage visualizerStage = new javafx.stage.Stage();
             visualizerStage.setTitle("Audio Visualizer");
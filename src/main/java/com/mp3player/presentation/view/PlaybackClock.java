@@ -0,0 +1,58 @@
+package com.mp3player.presentation.view;
+
+import com.mp3player.domain.repository.MusicPlayerRepository;
+import com.mp3player.presentation.viewmodel.MusicPlayerViewModel;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Pushes the playback position to the view model once per display pulse,
+ * but only while a song is playing. When playback pauses or stops the timer
+ * is stopped after a final update, so an idle player does no work at all.
+ */
+class PlaybackClock {
+    private final MusicPlayerRepository player;
+    private final MusicPlayerViewModel viewModel;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            refresh();
+        }
+    };
+    private boolean running;
+
+    PlaybackClock(MusicPlayerRepository player, MusicPlayerViewModel viewModel) {
+        this.player = player;
+        this.viewModel = viewModel;
+        viewModel.isPlayingProperty().addListener((obs, wasPlaying, playing) -> {
+            if (playing) {
+                start();
+            } else {
+                stop();
+            }
+        });
+    }
+
+    /**
+     * Reads the position once, e.g. after seeking while paused.
+     */
+    void refresh() {
+        if (player.isPlaying() || player.isPaused()) {
+            viewModel.updateProgress(player.getCurrentTime().toMillis(), player.getTotalDuration().toMillis());
+        }
+    }
+
+    private void start() {
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    private void stop() {
+        if (running) {
+            running = false;
+            timer.stop();
+            refresh();
+        }
+    }
+}
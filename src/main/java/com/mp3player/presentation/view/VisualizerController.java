@@ -1,18 +1,13 @@
 package com.mp3player.presentation.view;
 
+import com.mp3player.data.audio.SpectrumAnalyzer;
 import com.mp3player.data.repository.JavaFXMusicPlayerRepository;
+import com.mp3player.data.repository.MediaSpectrumSource;
+import com.mp3player.data.repository.SpectrumListener;
 import javafx.animation.AnimationTimer;
 import javafx.fxml.FXML;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
-import javafx.scene.media.MediaPlayer;
-import javafx.scene.paint.Color;
-import javafx.scene.paint.CycleMethod;
-import javafx.scene.paint.LinearGradient;
-import javafx.scene.paint.Stop;
-
-import java.util.Random;
 
 public class VisualizerController {
 
@@ -22,20 +17,31 @@ public class VisualizerController {
     @FXML private CheckBox enableCheckBox;
     @FXML private Slider sensitivitySlider;
     @FXML private Label sensitivityLabel;
+    @FXML private ComboBox<Integer> bandCountComboBox;
+    @FXML private Label frameTimeLabel;
 
-    private GraphicsContext gc;
+    private VisualizerRenderer renderer;
     private AnimationTimer animationTimer;
-    private Random random = new Random();
-    private JavaFXMusicPlayerRepository playerRepository;
+    private MediaSpectrumSource spectrumSource;
+    private final SpectrumListener spectrumListener = (timestamp, magnitudes) -> applyMagnitudes(magnitudes);
+    private SpectrumAnalyzer spectrumAnalyzer;
 
-    // Audio spectrum data from MediaPlayer
+    // Smoothed 0-1 band levels from the MediaPlayer spectrum or the in-process analyzer
     private double[] spectrumData = new double[64];
-    private int currentType = 0;
-    private String currentColorScheme = "Green Gradient";
+    private boolean spectrumChanged = true;
+    private long lastSpectrumUpdateNanos;
+
+    // Levels read from the in-process analyzer (streaming engine)
+    private float[] analyzerLevels = new float[spectrumData.length];
+    private long lastAnalyzerSequence = -1;
+
+    // Frame time reporting
+    private long averageFrameNanos;
+    private long lastFrameTimeReport;
 
     @FXML
     public void initialize() {
-        gc = visualizerCanvas.getGraphicsContext2D();
+        renderer = new VisualizerRenderer(visualizerCanvas, spectrumData.length);
 
         // Setup ComboBox items
         visualizerTypeComboBox.getItems().addAll(
@@ -45,22 +51,33 @@ public class VisualizerController {
             "Green Gradient", "Blue Gradient", "Rainbow", "Purple Gradient", "Fire"
         );
 
+        bandCountComboBox.getItems().addAll(32, 64, 128, 256);
+
         // Initialize with default values
         visualizerTypeComboBox.setValue("Spectrum Bars");
         colorSchemeComboBox.setValue("Green Gradient");
+        bandCountComboBox.setValue(spectrumData.length);
 
         // Setup listeners
         visualizerTypeComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
             switch (newVal) {
-                case "Spectrum Bars": currentType = 0; break;
-                case "Waveform": currentType = 1; break;
-                case "Circular": currentType = 2; break;
-                case "Particle Effect": currentType = 3; break;
+                case "Spectrum Bars": renderer.setType(VisualizerRenderer.TYPE_BARS); break;
+                case "Waveform": renderer.setType(VisualizerRenderer.TYPE_WAVEFORM); break;
+                case "Circular": renderer.setType(VisualizerRenderer.TYPE_CIRCULAR); break;
+                case "Particle Effect": renderer.setType(VisualizerRenderer.TYPE_PARTICLES); break;
             }
+            spectrumChanged = true;
         });
 
         colorSchemeComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
-            currentColorScheme = newVal;
+            renderer.setColorScheme(newVal);
+            spectrumChanged = true;
+        });
+
+        bandCountComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null && newVal != spectrumData.length) {
+                resizeBands(newVal);
+            }
         });
 
         sensitivitySlider.valueProperty().addListener((obs, oldVal, newVal) -> {
@@ -72,7 +89,7 @@ public class VisualizerController {
                 startAnimation();
             } else {
                 stopAnimation();
-                clearCanvas();
+                renderer.clear();
             }
         });
 
@@ -90,7 +107,7 @@ public class VisualizerController {
             public void handle(long now) {
                 if (enableCheckBox.isSelected()) {
                     updateSpectrumData();
-                    draw();
+                    renderFrame(now);
                 }
             }
         };
@@ -104,189 +121,110 @@ public class VisualizerController {
     }
 
     private void updateSpectrumData() {
-        if (playerRepository == null) {
-            return;
-        }
-
-        MediaPlayer mediaPlayer = playerRepository.getMediaPlayer();
-        if (mediaPlayer == null) {
-            // No active player, decay to zero
-            for (int i = 0; i < spectrumData.length; i++) {
-                spectrumData[i] *= 0.8;
+        if (spectrumAnalyzer != null) {
+            long sequence = spectrumAnalyzer.read(analyzerLevels);
+            if (sequence != lastAnalyzerSequence) {
+                lastAnalyzerSequence = sequence;
+                applyMagnitudes(analyzerLevels);
+                return;
             }
-            return;
         }
 
-        // Setup listener if not already set for this player
-        setupAudioListener(mediaPlayer);
+        if (System.nanoTime() - lastSpectrumUpdateNanos > 100_000_000L) {
+            // Nothing playing, decay to zero
+            decaySpectrum();
+        }
     }
 
-    private void setupAudioListener(MediaPlayer mediaPlayer) {
-        if (mediaPlayer == null) {
-            return;
+    private void applyMagnitudes(float[] magnitudes) {
+        lastSpectrumUpdateNanos = System.nanoTime();
+        double sensitivity = sensitivitySlider.getValue();
+        for (int i = 0; i < Math.min(spectrumData.length, magnitudes.length); i++) {
+            // Convert dB to 0-1 range (typical range is -60dB to 0dB)
+            double normalized = (magnitudes[i] + 60.0) / 60.0;
+            normalized = Math.max(0.0, Math.min(1.0, normalized));
+
+            // Smooth the data
+            spectrumData[i] = spectrumData[i] * 0.6 + normalized * sensitivity * 0.4;
         }
+        spectrumChanged = true;
+    }
 
-        // Configure audio spectrum
-        mediaPlayer.setAudioSpectrumNumBands(spectrumData.length);
-        mediaPlayer.setAudioSpectrumInterval(0.05); // 50ms refresh
-
-        // Set listener to update spectrum data
-        mediaPlayer.setAudioSpectrumListener((timestamp, duration, magnitudes, phases) -> {
-            for (int i = 0; i < Math.min(spectrumData.length, magnitudes.length); i++) {
-                float magnitude = magnitudes[i];
-                // Convert dB to 0-1 range (typical range is -60dB to 0dB)
-                double normalized = (magnitude + 60.0) / 60.0;
-                normalized = Math.max(0.0, Math.min(1.0, normalized));
-
-                // Smooth the data
-                double sensitivity = sensitivitySlider.getValue();
-                spectrumData[i] = spectrumData[i] * 0.6 + normalized * sensitivity * 0.4;
+    private void decaySpectrum() {
+        for (int i = 0; i < spectrumData.length; i++) {
+            if (spectrumData[i] > 0.001) {
+                spectrumData[i] *= 0.8;
+                spectrumChanged = true;
+            } else {
+                spectrumData[i] = 0;
             }
-        });
+        }
     }
 
     public void setPlayerRepository(JavaFXMusicPlayerRepository repository) {
-        this.playerRepository = repository;
-
-        if (repository != null && repository.getMediaPlayer() != null) {
-            MediaPlayer mediaPlayer = repository.getMediaPlayer();
-
-            // Configure audio spectrum listener
-            mediaPlayer.setAudioSpectrumNumBands(spectrumData.length);
-            mediaPlayer.setAudioSpectrumInterval(0.05); // 50ms refresh
-
-            // Set listener to update spectrum data
-            mediaPlayer.setAudioSpectrumListener((timestamp, duration, magnitudes, phases) -> {
-                for (int i = 0; i < Math.min(spectrumData.length, magnitudes.length); i++) {
-                    float magnitude = magnitudes[i];
-                    // Convert dB to 0-1 range
-                    double normalized = (magnitude + 60.0) / 60.0;
-                    normalized = Math.max(0.0, Math.min(1.0, normalized));
-
-                    // Smooth the data
-                    double sensitivity = sensitivitySlider.getValue();
-                    spectrumData[i] = spectrumData[i] * 0.6 + normalized * sensitivity * 0.4;
-                }
-            });
+        if (spectrumSource != null) {
+            spectrumSource.removeListener(spectrumListener);
+            spectrumSource = null;
         }
-    }
-
-    private void draw() {
-        clearCanvas();
 
-        switch (currentType) {
-            case 0: drawSpectrumBars(); break;
-            case 1: drawWaveform(); break;
-            case 2: drawCircular(); break;
-            case 3: drawParticleEffect(); break;
+        if (repository != null) {
+            spectrumSource = repository.getSpectrumSource();
+            spectrumSource.setBandCount(spectrumData.length);
+            spectrumSource.addListener(spectrumListener);
         }
     }
 
-    private void clearCanvas() {
-        gc.setFill(Color.rgb(15, 15, 30));
-        gc.fillRect(0, 0, visualizerCanvas.getWidth(), visualizerCanvas.getHeight());
-    }
-
-    private void drawSpectrumBars() {
-        double width = visualizerCanvas.getWidth();
-        double height = visualizerCanvas.getHeight();
-        double barWidth = width / spectrumData.length;
-
-        for (int i = 0; i < spectrumData.length; i++) {
-            double barHeight = spectrumData[i] * height * 0.8;
-            double x = i * barWidth;
-            double y = height - barHeight;
-
-            gc.setFill(getColorForValue(spectrumData[i], i));
-            gc.fillRoundRect(x + 1, y, barWidth - 2, barHeight, 3, 3);
+    public void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        this.spectrumAnalyzer = analyzer;
+        if (analyzer != null) {
+            analyzer.setBandCount(spectrumData.length);
+            analyzer.setEnabled(true);
         }
     }
 
-    private void drawWaveform() {
-        double width = visualizerCanvas.getWidth();
-        double height = visualizerCanvas.getHeight();
-        double centerY = height / 2;
-
-        gc.setStroke(getColorForValue(0.5, 0));
-        gc.setLineWidth(2);
-        gc.beginPath();
-        gc.moveTo(0, centerY);
-
-        for (int i = 0; i < spectrumData.length; i++) {
-            double x = (i / (double) spectrumData.length) * width;
-            double y = centerY + (spectrumData[i] - 0.5) * height * 0.6;
-            gc.lineTo(x, y);
+    private void resizeBands(int bandCount) {
+        spectrumData = new double[bandCount];
+        analyzerLevels = new float[bandCount];
+        lastAnalyzerSequence = -1;
+        if (spectrumAnalyzer != null) {
+            spectrumAnalyzer.setBandCount(bandCount);
         }
-
-        gc.stroke();
+        if (spectrumSource != null) {
+            spectrumSource.setBandCount(bandCount);
+        }
+        renderer.setBandCount(bandCount);
+        spectrumChanged = true;
     }
 
-    private void drawCircular() {
-        double centerX = visualizerCanvas.getWidth() / 2;
-        double centerY = visualizerCanvas.getHeight() / 2;
-        double baseRadius = Math.min(centerX, centerY) * 0.3;
-
-        for (int i = 0; i < spectrumData.length; i++) {
-            double angle = (i / (double) spectrumData.length) * 2 * Math.PI;
-            double radius = baseRadius + spectrumData[i] * 80;
-
-            double x1 = centerX + Math.cos(angle) * baseRadius;
-            double y1 = centerY + Math.sin(angle) * baseRadius;
-            double x2 = centerX + Math.cos(angle) * radius;
-            double y2 = centerY + Math.sin(angle) * radius;
-
-            gc.setStroke(getColorForValue(spectrumData[i], i));
-            gc.setLineWidth(3);
-            gc.strokeLine(x1, y1, x2, y2);
+    private void renderFrame(long now) {
+        if (!spectrumChanged && !renderer.isAnimating()) {
+            return; // nothing changed since the last frame
         }
-    }
+        spectrumChanged = false;
 
-    private void drawParticleEffect() {
-        double width = visualizerCanvas.getWidth();
-        double height = visualizerCanvas.getHeight();
+        long start = System.nanoTime();
+        renderer.render(spectrumData);
+        long elapsed = System.nanoTime() - start;
 
-        for (int i = 0; i < spectrumData.length; i++) {
-            if (spectrumData[i] > 0.3) {
-                int particleCount = (int) (spectrumData[i] * 5);
-                for (int j = 0; j < particleCount; j++) {
-                    double x = (i / (double) spectrumData.length) * width;
-                    double y = height - random.nextDouble() * spectrumData[i] * height;
-                    double size = 3 + random.nextDouble() * 4;
-
-                    gc.setFill(getColorForValue(spectrumData[i], i));
-                    gc.fillOval(x + random.nextDouble() * 20 - 10, y, size, size);
-                }
-            }
+        // Exponential average of the time spent drawing a frame
+        averageFrameNanos = averageFrameNanos == 0 ? elapsed : (averageFrameNanos * 15 + elapsed) / 16;
+        if (now - lastFrameTimeReport > 500_000_000L) {
+            lastFrameTimeReport = now;
+            frameTimeLabel.setText(String.format("%.2f ms/frame", averageFrameNanos / 1_000_000.0));
         }
     }
 
-    private Color getColorForValue(double value, int index) {
-        // Clamp value to 0-1 range to prevent HSB errors
-        value = Math.max(0.0, Math.min(1.0, value));
-
-        switch (currentColorScheme) {
-            case "Green Gradient":
-                return Color.hsb(120, Math.min(1.0, 0.7 + value * 0.3), Math.min(1.0, 0.4 + value * 0.6));
-
-            case "Blue Gradient":
-                return Color.hsb(200, Math.min(1.0, 0.7 + value * 0.3), Math.min(1.0, 0.4 + value * 0.6));
-
-            case "Rainbow":
-                double hue = (index / (double) spectrumData.length) * 360;
-                return Color.hsb(hue, 0.8, Math.min(1.0, 0.5 + value * 0.5));
-
-            case "Purple Gradient":
-                return Color.hsb(280, Math.min(1.0, 0.7 + value * 0.3), Math.min(1.0, 0.4 + value * 0.6));
-
-            case "Fire":
-                return Color.hsb(Math.max(0, 30 - value * 30), 1.0, Math.min(1.0, 0.5 + value * 0.5));
-
-            default:
-                return Color.web("#4ecca3");
-        }
+    public double getAverageFrameTimeMillis() {
+        return averageFrameNanos / 1_000_000.0;
     }
 
     public void cleanup() {
         stopAnimation();
+        if (spectrumSource != null) {
+            spectrumSource.removeListener(spectrumListener);
+        }
+        if (spectrumAnalyzer != null) {
+            spectrumAnalyzer.setEnabled(false);
+        }
     }
 }
@@ -0,0 +1,268 @@
+package com.mp3player.presentation.view;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+import java.util.Random;
+
+/**
+ * Draws the four visualizer types onto a canvas. Colors come from lookup
+ * tables built once per scheme and band count, particles live in
+ * preallocated arrays, and the bar view only repaints bars whose height
+ * changed since the last frame.
+ */
+class VisualizerRenderer {
+    static final int TYPE_BARS = 0;
+    static final int TYPE_WAVEFORM = 1;
+    static final int TYPE_CIRCULAR = 2;
+    static final int TYPE_PARTICLES = 3;
+
+    private static final int COLOR_LEVELS = 64;
+    private static final int MAX_PARTICLES = 2048;
+    private static final int PARTICLE_LIFE_FRAMES = 24;
+    private static final Color BACKGROUND = Color.rgb(15, 15, 30);
+
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    private final Random random = new Random();
+
+    private int type = TYPE_BARS;
+    private String colorScheme = "Green Gradient";
+    private int bandCount;
+    private boolean fullRepaint = true;
+
+    // [band][level] for schemes that depend on the band, [0][level] otherwise
+    private Color[][] colorTable;
+    private boolean colorsPerBand;
+    private double[] cosTable;
+    private double[] sinTable;
+    private int[] drawnBarHeights;
+
+    private final double[] particleX = new double[MAX_PARTICLES];
+    private final double[] particleY = new double[MAX_PARTICLES];
+    private final double[] particleSpeed = new double[MAX_PARTICLES];
+    private final double[] particleSize = new double[MAX_PARTICLES];
+    private final int[] particleAge = new int[MAX_PARTICLES];
+    private final int[] particleBand = new int[MAX_PARTICLES];
+    private int particleCount;
+
+    VisualizerRenderer(Canvas canvas, int bandCount) {
+        this.canvas = canvas;
+        this.gc = canvas.getGraphicsContext2D();
+        setBandCount(bandCount);
+    }
+
+    void setType(int type) {
+        if (this.type != type) {
+            this.type = type;
+            particleCount = 0;
+            invalidate();
+        }
+    }
+
+    void setColorScheme(String colorScheme) {
+        if (colorScheme != null && !colorScheme.equals(this.colorScheme)) {
+            this.colorScheme = colorScheme;
+            buildColorTable();
+            invalidate();
+        }
+    }
+
+    void setBandCount(int bandCount) {
+        this.bandCount = bandCount;
+        drawnBarHeights = new int[bandCount];
+        cosTable = new double[bandCount];
+        sinTable = new double[bandCount];
+        for (int i = 0; i < bandCount; i++) {
+            double angle = (i / (double) bandCount) * 2 * Math.PI;
+            cosTable[i] = Math.cos(angle);
+            sinTable[i] = Math.sin(angle);
+        }
+        particleCount = 0;
+        buildColorTable();
+        invalidate();
+    }
+
+    void invalidate() {
+        fullRepaint = true;
+    }
+
+    /**
+     * True while something on screen moves even if the levels do not change.
+     */
+    boolean isAnimating() {
+        return type == TYPE_PARTICLES && particleCount > 0;
+    }
+
+    void clear() {
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        particleCount = 0;
+        invalidate();
+    }
+
+    void render(double[] levels) {
+        switch (type) {
+            case TYPE_BARS: drawSpectrumBars(levels); break;
+            case TYPE_WAVEFORM: drawWaveform(levels); break;
+            case TYPE_CIRCULAR: drawCircular(levels); break;
+            case TYPE_PARTICLES: drawParticleEffect(levels); break;
+            default: break;
+        }
+        fullRepaint = false;
+    }
+
+    private void clearCanvas() {
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    }
+
+    private void drawSpectrumBars(double[] levels) {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        double barWidth = width / bandCount;
+        double gap = barWidth > 4 ? 1 : 0;
+
+        if (fullRepaint) {
+            clearCanvas();
+        }
+
+        for (int i = 0; i < bandCount; i++) {
+            int barHeight = (int) (Math.max(0, levels[i]) * height * 0.8);
+            if (!fullRepaint && barHeight == drawnBarHeights[i]) {
+                continue;
+            }
+            drawnBarHeights[i] = barHeight;
+
+            double x = i * barWidth;
+            if (!fullRepaint) {
+                gc.setFill(BACKGROUND);
+                gc.fillRect(x, 0, barWidth, height);
+            }
+            gc.setFill(colorFor(levels[i], i));
+            gc.fillRoundRect(x + gap, height - barHeight, barWidth - 2 * gap, barHeight, 3, 3);
+        }
+    }
+
+    private void drawWaveform(double[] levels) {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        double centerY = height / 2;
+
+        clearCanvas();
+        gc.setStroke(colorFor(0.5, 0));
+        gc.setLineWidth(2);
+        gc.beginPath();
+        gc.moveTo(0, centerY);
+
+        for (int i = 0; i < bandCount; i++) {
+            double x = (i / (double) bandCount) * width;
+            double y = centerY + (levels[i] - 0.5) * height * 0.6;
+            gc.lineTo(x, y);
+        }
+
+        gc.stroke();
+    }
+
+    private void drawCircular(double[] levels) {
+        double centerX = canvas.getWidth() / 2;
+        double centerY = canvas.getHeight() / 2;
+        double baseRadius = Math.min(centerX, centerY) * 0.3;
+
+        clearCanvas();
+        gc.setLineWidth(bandCount > 128 ? 2 : 3);
+        for (int i = 0; i < bandCount; i++) {
+            double radius = baseRadius + levels[i] * 80;
+            gc.setStroke(colorFor(levels[i], i));
+            gc.strokeLine(centerX + cosTable[i] * baseRadius, centerY + sinTable[i] * baseRadius,
+                    centerX + cosTable[i] * radius, centerY + sinTable[i] * radius);
+        }
+    }
+
+    private void drawParticleEffect(double[] levels) {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        // Keep the spawn rate per pixel the same whatever the band count
+        double spawnScale = 64.0 / bandCount;
+
+        for (int i = 0; i < bandCount; i++) {
+            if (levels[i] <= 0.3) {
+                continue;
+            }
+            double expected = levels[i] * 5 * spawnScale / (PARTICLE_LIFE_FRAMES / 4.0);
+            int spawn = (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+            for (int j = 0; j < spawn && particleCount < MAX_PARTICLES; j++) {
+                int p = particleCount++;
+                particleX[p] = (i / (double) bandCount) * width + random.nextDouble() * 20 - 10;
+                particleY[p] = height - random.nextDouble() * levels[i] * height;
+                particleSpeed[p] = 0.5 + random.nextDouble() * 2;
+                particleSize[p] = 3 + random.nextDouble() * 4;
+                particleAge[p] = 0;
+                particleBand[p] = i;
+            }
+        }
+
+        clearCanvas();
+        int alive = 0;
+        for (int p = 0; p < particleCount; p++) {
+            int age = particleAge[p] + 1;
+            if (age >= PARTICLE_LIFE_FRAMES) {
+                continue;
+            }
+            // Compact the pool in place while drawing
+            particleX[alive] = particleX[p];
+            particleY[alive] = particleY[p] - particleSpeed[p];
+            particleSpeed[alive] = particleSpeed[p];
+            particleSize[alive] = particleSize[p];
+            particleAge[alive] = age;
+            particleBand[alive] = particleBand[p];
+
+            int band = particleBand[alive];
+            gc.setGlobalAlpha(1.0 - age / (double) PARTICLE_LIFE_FRAMES);
+            gc.setFill(colorFor(levels[band], band));
+            gc.fillOval(particleX[alive], particleY[alive], particleSize[alive], particleSize[alive]);
+            alive++;
+        }
+        gc.setGlobalAlpha(1.0);
+        particleCount = alive;
+    }
+
+    private Color colorFor(double value, int band) {
+        int level = (int) (Math.max(0.0, Math.min(1.0, value)) * (COLOR_LEVELS - 1));
+        return colorTable[colorsPerBand ? band : 0][level];
+    }
+
+    private void buildColorTable() {
+        colorsPerBand = "Rainbow".equals(colorScheme);
+        colorTable = new Color[colorsPerBand ? bandCount : 1][COLOR_LEVELS];
+        for (int band = 0; band < colorTable.length; band++) {
+            for (int level = 0; level < COLOR_LEVELS; level++) {
+                colorTable[band][level] = computeColor(level / (double) (COLOR_LEVELS - 1), band);
+            }
+        }
+    }
+
+    private Color computeColor(double value, int index) {
+        switch (colorScheme) {
+            case "Green Gradient":
+                return Color.hsb(120, Math.min(1.0, 0.7 + value * 0.3), Math.min(1.0, 0.4 + value * 0.6));
+
+            case "Blue Gradient":
+                return Color.hsb(200, Math.min(1.0, 0.7 + value * 0.3), Math.min(1.0, 0.4 + value * 0.6));
+
+            case "Rainbow":
+                double hue = (index / (double) bandCount) * 360;
+                return Color.hsb(hue, 0.8, Math.min(1.0, 0.5 + value * 0.5));
+
+            case "Purple Gradient":
+                return Color.hsb(280, Math.min(1.0, 0.7 + value * 0.3), Math.min(1.0, 0.4 + value * 0.6));
+
+            case "Fire":
+                return Color.hsb(Math.max(0, 30 - value * 30), 1.0, Math.min(1.0, 0.5 + value * 0.5));
+
+            default:
+                return Color.web("#4ecca3");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.mp3player.presentation.view;
+
+import com.mp3player.domain.entity.Waveform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws a track's waveform overview, one column per pixel, with the part
+ * already played in a stronger color. Reads the zoom level closest to the
+ * canvas width, so a redraw touches about one bin per pixel, and only
+ * redraws when the played part grows by a whole pixel.
+ */
+class WaveformRenderer {
+    private static final Color PLAYED = Color.rgb(118, 75, 162, 0.7);
+    private static final Color UNPLAYED = Color.rgb(102, 126, 234, 0.3);
+
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    private Waveform waveform;
+    private double progress;
+    private int drawnPlayedWidth = -1;
+
+    WaveformRenderer(Canvas canvas) {
+        this.canvas = canvas;
+        this.gc = canvas.getGraphicsContext2D();
+    }
+
+    void setWaveform(Waveform waveform) {
+        this.waveform = waveform;
+        redraw();
+    }
+
+    void setProgress(double fraction) {
+        progress = Math.max(0, Math.min(1, fraction));
+        if (waveform != null && playedWidth() != drawnPlayedWidth) {
+            redraw();
+        }
+    }
+
+    void redraw() {
+        double height = canvas.getHeight();
+        gc.clearRect(0, 0, canvas.getWidth(), height);
+        drawnPlayedWidth = playedWidth();
+        int width = (int) canvas.getWidth();
+        if (waveform == null || width <= 0 || waveform.getBinCount(0) == 0) {
+            return;
+        }
+
+        int level = waveform.levelFor(width);
+        int bins = waveform.getBinCount(level);
+        double middle = height / 2;
+        double scale = middle / 128.0;
+
+        gc.setFill(PLAYED);
+        for (int x = 0; x < width; x++) {
+            if (x == drawnPlayedWidth) {
+                gc.setFill(UNPLAYED);
+            }
+            int first = (int) ((long) x * bins / width);
+            int last = Math.max(first + 1, (int) ((long) (x + 1) * bins / width));
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int bin = first; bin < last && bin < bins; bin++) {
+                min = Math.min(min, waveform.getMin(level, bin));
+                max = Math.max(max, waveform.getMax(level, bin));
+            }
+            double top = middle - (max + 1) * scale;
+            gc.fillRect(x, top, 1, Math.max(1, (max - min + 1) * scale));
+        }
+    }
+
+    private int playedWidth() {
+        return (int) (progress * canvas.getWidth());
+    }
+}
@@ -1,16 +1,34 @@
 package com.mp3player.presentation.viewmodel;
 
+import com.mp3player.domain.entity.PlaybackSession;
 import com.mp3player.domain.entity.Playlist;
+import com.mp3player.domain.entity.PlaylistChange;
 import com.mp3player.domain.entity.PlaylistEntity;
 import com.mp3player.domain.entity.PlaylistManager;
 import com.mp3player.domain.entity.Song;
+import com.mp3player.domain.entity.Waveform;
 import com.mp3player.domain.usecase.*;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class MusicPlayerViewModel {
     private final PlaySongUseCase playSongUseCase;
@@ -22,14 +40,31 @@ public class MusicPlayerViewModel {
     private final LoadSongsUseCase loadSongsUseCase;
     private final SavePlaylistUseCase savePlaylistUseCase;
     private final LoadPlaylistFileUseCase loadPlaylistFileUseCase;
-
-    private final PlaylistManager playlistManager;
+    private final RestorePlaylistsUseCase restorePlaylistsUseCase;
+    private final RecordPlaylistChangeUseCase recordPlaylistChangeUseCase;
+    private final RestorePlaybackSessionUseCase restorePlaybackSessionUseCase;
+    private final SavePlaybackSessionUseCase savePlaybackSessionUseCase;
+    private final LoadWaveformUseCase loadWaveformUseCase;
+    private final AnalyzeLoudnessUseCase analyzeLoudnessUseCase;
+
+    // Placeholder until the saved playlists are restored in the background
+    private PlaylistManager playlistManager;
+    private boolean playlistsRestored;
+    // Playlist edits made while the restore runs, replayed onto the restored playlists
+    private final List<Runnable> deferredEdits = new ArrayList<>();
+    private final BooleanProperty isRestoring = new SimpleBooleanProperty(false);
+
+    // Song left off in the last session, played from resumePositionMillis on the next play
+    private Song resumeSong;
+    private long resumePositionMillis;
+    private long lastPositionMillis;
     private final Playlist playlist;
 
     // Observable properties for View binding
     private final ObjectProperty<Song> currentSong = new SimpleObjectProperty<>();
-    private final ObservableList<Song> songs = FXCollections.observableArrayList();
-    private final ObservableList<Song> favoriteSongs = FXCollections.observableArrayList();
+    // Updated with minimal edits so the list views only redraw rows that changed
+    private final SyncedObservableList<Song> songs = new SyncedObservableList<>();
+    private final SyncedObservableList<Song> favoriteSongs = new SyncedObservableList<>();
     private final ObservableList<PlaylistEntity> playlists = FXCollections.observableArrayList();
     private final ObjectProperty<PlaylistEntity> currentPlaylistEntity = new SimpleObjectProperty<>();
     private final DoubleProperty volume = new SimpleDoubleProperty(0.5);
@@ -41,7 +76,37 @@ public class MusicPlayerViewModel {
     private final StringProperty currentTimeString = new SimpleStringProperty("00:00");
     private final StringProperty totalTimeString = new SimpleStringProperty("00:00");
     private final DoubleProperty progress = new SimpleDoubleProperty(0.0);
+    private final ObjectProperty<Waveform> waveform = new SimpleObjectProperty<>();
+    private long displayedCurrentSecond;
+    private long displayedTotalSecond;
     private final StringProperty searchText = new SimpleStringProperty("");
+    private final BooleanProperty isLoading = new SimpleBooleanProperty(false);
+    private final DoubleProperty loadProgress = new SimpleDoubleProperty(0.0);
+    private final IntegerProperty loadedSongCount = new SimpleIntegerProperty(0);
+
+    // Background loading: songs are queued by the loader thread and drained
+    // on the FX thread by at most one pending runLater at a time
+    private final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "song-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Queue<Song> pendingSongs = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    // Latest scan progress, applied by at most one pending runLater like the songs
+    private volatile double pendingLoadProgress;
+    private final AtomicBoolean progressScheduled = new AtomicBoolean(false);
+    private Future<?> loadTask;
+    private volatile int loadGeneration;
+
+    // Search runs on its own thread once typing pauses for SEARCH_DEBOUNCE_MILLIS
+    private static final long SEARCH_DEBOUNCE_MILLIS = 120;
+    private final ScheduledExecutorService searchExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "song-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> pendingSearch;
 
     public MusicPlayerViewModel(
             PlaySongUseCase playSongUseCase,
@@ -52,7 +117,13 @@ public class MusicPlayerViewModel {
             SetPlaybackSpeedUseCase setPlaybackSpeedUseCase,
             LoadSongsUseCase loadSongsUseCase,
             SavePlaylistUseCase savePlaylistUseCase,
-            LoadPlaylistFileUseCase loadPlaylistFileUseCase
+            LoadPlaylistFileUseCase loadPlaylistFileUseCase,
+            RestorePlaylistsUseCase restorePlaylistsUseCase,
+            RecordPlaylistChangeUseCase recordPlaylistChangeUseCase,
+            RestorePlaybackSessionUseCase restorePlaybackSessionUseCase,
+            SavePlaybackSessionUseCase savePlaybackSessionUseCase,
+            LoadWaveformUseCase loadWaveformUseCase,
+            AnalyzeLoudnessUseCase analyzeLoudnessUseCase
     ) {
         this.playSongUseCase = playSongUseCase;
         this.pauseSongUseCase = pauseSongUseCase;
@@ -63,6 +134,12 @@ public class MusicPlayerViewModel {
         this.loadSongsUseCase = loadSongsUseCase;
         this.savePlaylistUseCase = savePlaylistUseCase;
         this.loadPlaylistFileUseCase = loadPlaylistFileUseCase;
+        this.restorePlaylistsUseCase = restorePlaylistsUseCase;
+        this.recordPlaylistChangeUseCase = recordPlaylistChangeUseCase;
+        this.restorePlaybackSessionUseCase = restorePlaybackSessionUseCase;
+        this.savePlaybackSessionUseCase = savePlaybackSessionUseCase;
+        this.loadWaveformUseCase = loadWaveformUseCase;
+        this.analyzeLoudnessUseCase = analyzeLoudnessUseCase;
 
         // Initialize playlist manager and playlist
         this.playlistManager = new PlaylistManager();
@@ -72,101 +149,395 @@ public class MusicPlayerViewModel {
         playlists.setAll(playlistManager.getAllPlaylists());
         currentPlaylistEntity.set(playlistManager.getCurrentPlaylist());
 
+        // Show the overview of whichever song is current
+        currentSong.addListener((obs, oldSong, newSong) -> {
+            if (newSong == null || !newSong.equals(oldSong)) {
+                requestWaveform(newSong);
+            }
+        });
+
         // Listen to search text changes
-        searchText.addListener((obs, oldVal, newVal) -> filterSongs(newVal));
+        searchText.addListener((obs, oldVal, newVal) -> scheduleSearch(newVal));
 
         // Listen to playlist changes
         currentPlaylistEntity.addListener((obs, oldPlaylist, newPlaylist) -> {
             if (newPlaylist != null) {
                 playlistManager.setCurrentPlaylist(newPlaylist);
+                recordChange(PlaylistChange.currentPlaylistChanged(newPlaylist));
                 playlist.setPlaylistEntity(newPlaylist);
                 updateSongsList();
                 updateFavoritesList();
+                // Measures whatever the switched-to or restored playlist has not been yet
+                analyzeLoudnessUseCase.execute(newPlaylist.getSongs());
             }
         });
     }
 
-    public void loadSongs(String directoryPath) {
-        List<Song> loadedSongs = loadSongsUseCase.execute(directoryPath);
-        for (Song song : loadedSongs) {
-            playlist.addSong(song);
+    /**
+     * Shows the song from the last session so it can be resumed right away.
+     * Only reads a small file, so it runs before the playlists are restored.
+     */
+    public void restorePlaybackSession() {
+        PlaybackSession session = restorePlaybackSessionUseCase.execute();
+        if (session == null || currentSong.get() != null) {
+            return;
         }
-        updateSongsList();
-        updateFavoritesList();
-        if (!playlist.isEmpty()) {
+        Song song = session.getSong();
+        resumeSong = song;
+        resumePositionMillis = session.getPositionMillis();
+        currentSong.set(song);
+        updateProgress(resumePositionMillis, song.getDuration() != null ? song.getDuration().toMillis() : 0);
+    }
+
+    /**
+     * Restores the saved playlists on the loader thread and swaps them in on
+     * the FX thread. Loads started meanwhile queue up behind the restore.
+     */
+    public void restorePlaylists(Runnable onRestored) {
+        isRestoring.set(true);
+        loaderExecutor.submit(() -> {
+            try {
+                PlaylistManager restored = restorePlaylistsUseCase.execute();
+                Platform.runLater(() -> {
+                    applyRestoredPlaylists(restored);
+                    if (onRestored != null) {
+                        onRestored.run();
+                    }
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Error restoring playlists: " + e.getMessage());
+                e.printStackTrace();
+                // Carry on with empty playlists so edits are still saved from here on
+                Platform.runLater(() -> applyRestoredPlaylists(new PlaylistManager()));
+            }
+        });
+    }
+
+    private void applyRestoredPlaylists(PlaylistManager restored) {
+        playlistManager = restored;
+        playlists.setAll(playlistManager.getAllPlaylists());
+        currentPlaylistEntity.set(playlistManager.getCurrentPlaylist());
+        playlist.setRepeat(playlistManager.isRepeat());
+        playlist.setShuffle(playlistManager.isShuffle());
+        isRepeat.set(playlistManager.isRepeat());
+        isShuffled.set(playlistManager.isShuffle());
+
+        // Keep the playing or resumable song, but use the playlist's instance of it
+        Song current = currentSong.get();
+        int index = current != null ? playlist.getPlaylistEntity().indexOf(current) : -1;
+        if (index >= 0) {
+            Song match = playlist.getPlaylistEntity().getSongAt(index);
+            playlist.setCurrentSong(match);
+            if (resumeSong != null) {
+                resumeSong = match;
+            }
+            currentSong.set(match);
+        } else if (current == null) {
             currentSong.set(playlist.getCurrentSong());
         }
+
+        playlistsRestored = true;
+        isRestoring.set(false);
+
+        List<Runnable> edits = new ArrayList<>(deferredEdits);
+        deferredEdits.clear();
+        for (Runnable edit : edits) {
+            edit.run();
+        }
     }
 
-    public void addSingleFile(String filePath) {
-        // Create a Song from the single file
-        java.io.File file = new java.io.File(filePath);
-        if (file.exists() && file.isFile()) {
-            String fileName = file.getName();
-            String title = fileName.substring(0, fileName.lastIndexOf('.'));
-            String artist = "Unknown Artist";
-
-            // Parse title and artist from filename (e.g., "Artist - Title.mp3")
-            if (title.contains(" - ")) {
-                String[] parts = title.split(" - ", 2);
-                artist = parts[0].trim();
-                title = parts[1].trim();
+    // Queues the edit if the restored playlists are not in place yet; true if it was queued
+    private boolean deferWhileRestoring(Runnable edit) {
+        if (!isRestoring.get()) {
+            return false;
+        }
+        deferredEdits.add(edit);
+        return true;
+    }
+
+    // The restored playlist's instance of a song picked before the restore finished
+    private Song restoredInstance(Song song) {
+        int index = playlist.getPlaylistEntity().indexOf(song);
+        return index >= 0 ? playlist.getPlaylistEntity().getSongAt(index) : song;
+    }
+
+    private void withRestoredPlaylist(PlaylistEntity placeholder, Consumer<PlaylistEntity> edit) {
+        playlistManager.getPlaylistById(placeholder.getId()).ifPresent(edit);
+    }
+
+    // Remembers the current song and position for the next start
+    public void savePlaybackSession() {
+        Song song = currentSong.get();
+        if (song == null) {
+            return;
+        }
+        long position = resumeSong != null ? resumePositionMillis
+                : isPlaying.get() || isPaused.get() ? lastPositionMillis : 0;
+        savePlaybackSessionUseCase.execute(new PlaybackSession(song, position));
+    }
+
+    private void requestWaveform(Song song) {
+        waveform.set(null);
+        loadWaveformUseCase.execute(song, loaded -> Platform.runLater(() -> {
+            if (song.equals(currentSong.get())) {
+                waveform.set(loaded);
+            }
+        }));
+    }
+
+    public void loadSongs(String directoryPath) {
+        int generation = startLoading();
+        loadTask = loaderExecutor.submit(() -> {
+            try {
+                loadSongsUseCase.execute(directoryPath, batch -> enqueueLoadedSongs(batch, generation),
+                        fraction -> enqueueLoadProgress(fraction, generation));
+            } catch (RuntimeException e) {
+                System.err.println("Error loading songs: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                Platform.runLater(() -> finishLoading(generation));
+            }
+        });
+    }
+
+    public void cancelLoading() {
+        if (!isLoading.get()) {
+            return;
+        }
+        loadSongsUseCase.cancel();
+        if (loadTask != null) {
+            loadTask.cancel(true);
+        }
+        // Invalidate the running load so late batches are dropped
+        loadGeneration++;
+        pendingSongs.clear();
+        isLoading.set(false);
+        loadProgress.set(0.0);
+    }
+
+    private int startLoading() {
+        cancelLoading();
+        loadGeneration++;
+        loadedSongCount.set(0);
+        loadProgress.set(-1.0); // indeterminate until the loader reports progress
+        isLoading.set(true);
+        return loadGeneration;
+    }
+
+    private void enqueueLoadedSongs(List<Song> batch, int generation) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        pendingSongs.addAll(batch);
+        if (flushScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::flushLoadedSongs);
+        }
+    }
+
+    private void enqueueLoadProgress(double fraction, int generation) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        pendingLoadProgress = fraction;
+        if (progressScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                progressScheduled.set(false);
+                if (generation == loadGeneration && isLoading.get()) {
+                    // Found directories can outpace scanned ones for a while; never move backwards
+                    loadProgress.set(Math.max(loadProgress.get(), Math.min(1.0, pendingLoadProgress)));
+                }
+            });
+        }
+    }
+
+    private void flushLoadedSongs() {
+        flushScheduled.set(false);
+
+        List<Song> batch = new ArrayList<>();
+        Song song;
+        while ((song = pendingSongs.poll()) != null) {
+            batch.add(song);
+        }
+
+        List<Song> moved = new ArrayList<>();
+        List<Song> added = playlist.addSongs(batch, moved);
+        if (!moved.isEmpty()) {
+            relocateMovedSongs(moved);
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        recordChange(PlaylistChange.songsAdded(playlist.getPlaylistEntity(), added));
+        analyzeLoudnessUseCase.execute(added);
+
+        // Appended songs go after every existing favorite
+        List<Song> addedFavorites = new ArrayList<>();
+        for (Song addedSong : added) {
+            if (addedSong.isFavorite()) {
+                addedFavorites.add(addedSong);
             }
+        }
 
-            Song song = new Song(
-                java.util.UUID.randomUUID().toString(),
-                title,
-                artist,
-                filePath,
-                Duration.ZERO // Duration will be set when playing
-            );
+        String currentSearch = searchText.get();
+        if (currentSearch == null || currentSearch.trim().isEmpty()) {
+            songs.addAll(added);
+        } else {
+            filterSongs(currentSearch);
+        }
+        if (!addedFavorites.isEmpty()) {
+            favoriteSongs.addAll(addedFavorites);
+        }
+        loadedSongCount.set(loadedSongCount.get() + added.size());
+
+        if (currentSong.get() == null && !playlist.isEmpty()) {
+            currentSong.set(playlist.getCurrentSong());
+        }
+    }
 
+    private void finishLoading(int generation) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        flushLoadedSongs();
+        isLoading.set(false);
+        loadProgress.set(1.0);
+    }
+
+    public void addSingleFile(String filePath) {
+        if (deferWhileRestoring(() -> addSingleFile(filePath))) {
+            return;
+        }
+        // Tags and duration are read from the file itself
+        Song song = loadSongsUseCase.executeForFile(filePath);
+        if (song != null && !playlist.getPlaylistEntity().containsSong(song)) {
             playlist.addSong(song);
+            recordChange(PlaylistChange.songsAdded(playlist.getPlaylistEntity(), List.of(song)));
+            analyzeLoudnessUseCase.execute(List.of(song));
             updateSongsList();
-            updateFavoritesList();
+            if (song.isFavorite()) {
+                favoriteSongs.add(song);
+            }
 
             if (playlist.size() == 1) {
                 currentSong.set(playlist.getCurrentSong());
             }
+        } else if (song != null && playlist.getPlaylistEntity().hasMoved(song)) {
+            relocateMovedSongs(List.of(song));
+        }
+    }
+
+    // Loaded songs whose id is already in the playlist under another path are files that were moved
+    private void relocateMovedSongs(List<Song> loaded) {
+        Map<String, Song> moved = new HashMap<>();
+        for (Song song : loaded) {
+            if (playlistManager.relocateSong(song)) {
+                moved.put(song.getId(), song);
+            }
+        }
+        if (moved.isEmpty()) {
+            return;
+        }
+        recordChange(PlaylistChange.songsRelocated(new ArrayList<>(moved.values())));
+
+        // Rows compare equal by id, so swap in the new instances directly
+        replaceMovedRows(songs, moved);
+        replaceMovedRows(favoriteSongs, moved);
+        Song current = currentSong.get();
+        if (current != null && moved.containsKey(current.getId())) {
+            currentSong.set(moved.get(current.getId()));
+            if (resumeSong != null) {
+                resumeSong = currentSong.get();
+            }
+        }
+    }
+
+    private static void replaceMovedRows(List<Song> rows, Map<String, Song> moved) {
+        for (int i = 0; i < rows.size(); i++) {
+            Song song = moved.get(rows.get(i).getId());
+            if (song != null) {
+                rows.set(i, song);
+            }
         }
     }
 
     public void removeSong(Song song) {
-        if (song != null) {
-            int index = songs.indexOf(song);
-            if (index >= 0) {
-                playlist.removeSong(index);
-                updateSongsList();
-                updateFavoritesList();
+        if (deferWhileRestoring(() -> removeSong(restoredInstance(song)))) {
+            return;
+        }
+        if (song != null && playlist.getPlaylistEntity().containsSong(song)) {
+            playlist.removeSong(song);
+            recordChange(PlaylistChange.songRemoved(playlist.getPlaylistEntity(), song));
+            updateSongsList();
+            if (song.isFavorite()) {
+                favoriteSongs.remove(song);
             }
         }
     }
 
+    private void scheduleSearch(String filter) {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+        }
+
+        if (filter == null || filter.trim().isEmpty()) {
+            pendingSearch = null;
+            songs.syncWith(playlist.getAllSongs());
+            return;
+        }
+
+        runSearch(filter, SEARCH_DEBOUNCE_MILLIS);
+    }
+
+    // Re-filters after the playlist changed while a search is shown
     private void filterSongs(String filter) {
-        List<Song> filtered = playlist.getFilteredSongs(filter);
-        songs.setAll(filtered);
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+        }
+        runSearch(filter, 0);
+    }
+
+    // Only the snapshot is taken here; indexing and the query run on the search thread
+    private void runSearch(String filter, long delayMillis) {
+        PlaylistEntity.Snapshot snapshot = playlist.snapshotForSearch();
+        pendingSearch = searchExecutor.schedule(() -> {
+            List<Song> filtered = playlist.searchSongs(snapshot, filter);
+            Platform.runLater(() -> {
+                if (filter.equals(searchText.get()) && snapshot.getPlaylist() == playlist.getPlaylistEntity()) {
+                    songs.syncWith(filtered);
+                }
+            });
+        }, delayMillis, TimeUnit.MILLISECONDS);
     }
 
     private void updateSongsList() {
         String currentSearch = searchText.get();
         if (currentSearch == null || currentSearch.trim().isEmpty()) {
-            songs.setAll(playlist.getAllSongs());
+            songs.syncWith(playlist.getAllSongs());
         } else {
             filterSongs(currentSearch);
         }
     }
 
     public void playSong(Song song) {
-        playSongUseCase.execute(song);
+        startSong(song, 0);
+    }
+
+    private void startSong(Song song, long positionMillis) {
+        resumeSong = null;
+        playSongUseCase.execute(song, Duration.ofMillis(positionMillis));
         currentSong.set(song);
         playlist.setCurrentSong(song);  // Update playlist's currentIndex
         isPlaying.set(true);
         isPaused.set(false);
+        savePlaybackSession();
     }
 
     public void playCurrentSong() {
         Song song = playlist.getCurrentSong();
-        if (song != null) {
+        if (resumeSong != null && (song == null || song.equals(resumeSong))) {
+            // Pick up where the last session stopped
+            startSong(resumeSong, resumePositionMillis);
+        } else if (song != null) {
             playSong(song);
         }
     }
@@ -189,6 +560,7 @@ public class MusicPlayerViewModel {
         isPaused.set(false);
         progress.set(0.0);
         currentTimeString.set("00:00");
+        displayedCurrentSecond = 0;
     }
 
     public void nextSong() {
@@ -201,6 +573,14 @@ public class MusicPlayerViewModel {
         }
     }
 
+    public Song peekNextSong() {
+        return playlist.peekNextSong();
+    }
+
+    public Song peekPreviousSong() {
+        return playlist.peekPreviousSong();
+    }
+
     public void previousSong() {
         Song previous = playlist.previousSong();
         if (previous != null) {
@@ -219,13 +599,23 @@ public class MusicPlayerViewModel {
     }
 
     public void setShuffle(boolean shuffle) {
+        if (deferWhileRestoring(() -> setShuffle(shuffle))) {
+            return;
+        }
         playlist.setShuffle(shuffle);
         isShuffled.set(shuffle);
+        playlistManager.setShuffle(shuffle);
+        recordChange(PlaylistChange.shuffleChanged(shuffle));
     }
 
     public void setRepeat(boolean repeat) {
+        if (deferWhileRestoring(() -> setRepeat(repeat))) {
+            return;
+        }
         playlist.setRepeat(repeat);
         isRepeat.set(repeat);
+        playlistManager.setRepeat(repeat);
+        recordChange(PlaylistChange.repeatChanged(repeat));
     }
 
     public void setSearchText(String text) {
@@ -233,21 +623,56 @@ public class MusicPlayerViewModel {
     }
 
     public void toggleFavorite(Song song) {
+        if (deferWhileRestoring(() -> toggleFavorite(restoredInstance(song)))) {
+            return;
+        }
         if (song != null) {
-            playlist.toggleFavorite(song);
-            updateFavoritesList();
-            updateSongsList();
+            boolean favorite = !song.isFavorite();
+            int rank = playlist.setFavorite(song, favorite);
+            recordChange(PlaylistChange.favoriteChanged(song));
+
+            // Only the one favorites entry and song row change
+            if (rank < 0) {
+                return; // not in the current playlist
+            }
+            if (favorite && rank <= favoriteSongs.size()) {
+                favoriteSongs.add(rank, song);
+            } else if (!favorite && rank < favoriteSongs.size()) {
+                favoriteSongs.remove(rank);
+            } else {
+                updateFavoritesList();
+            }
+            refreshSongRow(song);
         }
     }
 
     public void clearFavorites() {
-        playlist.clearFavorites();
-        updateFavoritesList();
-        updateSongsList();
+        if (deferWhileRestoring(this::clearFavorites)) {
+            return;
+        }
+        List<Song> cleared = playlist.clearFavorites();
+        for (Song song : cleared) {
+            recordChange(PlaylistChange.favoriteChanged(song));
+        }
+        favoriteSongs.clear();
+        for (Song song : cleared) {
+            refreshSongRow(song);
+        }
+    }
+
+    // Replaces the song's row with itself so only that cell is redrawn
+    private void refreshSongRow(Song song) {
+        int row = playlist.indexOf(song);
+        if (row < 0 || row >= songs.size() || !songs.get(row).equals(song)) {
+            row = songs.indexOf(song); // list is filtered by a search
+        }
+        if (row >= 0) {
+            songs.set(row, songs.get(row));
+        }
     }
 
     private void updateFavoritesList() {
-        favoriteSongs.setAll(playlist.getFavoriteSongs());
+        favoriteSongs.syncWith(playlist.getFavoriteSongs());
     }
 
     public void setPlaybackSpeed(double speed) {
@@ -261,57 +686,120 @@ public class MusicPlayerViewModel {
         savePlaylistUseCase.execute(playlist.getAllSongs(), filePath);
     }
 
-    public void loadPlaylistFromFile(String filePath) throws java.io.IOException {
-        List<Song> loadedSongs = loadPlaylistFileUseCase.execute(filePath);
-        for (Song song : loadedSongs) {
-            playlist.addSong(song);
-        }
-        updateSongsList();
-        updateFavoritesList();
-        if (!playlist.isEmpty() && currentSong.get() == null) {
-            currentSong.set(playlist.getCurrentSong());
-        }
+    public void loadPlaylistFromFile(String filePath, Consumer<Integer> onLoaded, Consumer<Exception> onError) {
+        int generation = startLoading();
+        loadTask = loaderExecutor.submit(() -> {
+            try {
+                AtomicInteger loadedCount = new AtomicInteger();
+                loadPlaylistFileUseCase.execute(filePath, batch -> {
+                    loadedCount.addAndGet(batch.size());
+                    enqueueLoadedSongs(batch, generation);
+                });
+                Platform.runLater(() -> {
+                    if (generation == loadGeneration) {
+                        finishLoading(generation);
+                        if (onLoaded != null) {
+                            onLoaded.accept(loadedCount.get());
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    if (generation == loadGeneration) {
+                        finishLoading(generation);
+                        if (onError != null) {
+                            onError.accept(e);
+                        }
+                    }
+                });
+            }
+        });
     }
 
-    public void updateProgress(double currentSeconds, double totalSeconds) {
-        if (totalSeconds > 0) {
-            progress.set(currentSeconds / totalSeconds);
+    public void updateProgress(long currentMillis, long totalMillis) {
+        lastPositionMillis = currentMillis;
+        if (totalMillis > 0) {
+            // Skip sub-pixel moves of the progress slider
+            double fraction = (double) currentMillis / totalMillis;
+            if (Math.abs(fraction - progress.get()) >= 0.0005) {
+                progress.set(fraction);
+            }
+        }
+
+        // Time labels only change when the displayed second does
+        long currentSecond = currentMillis / 1000;
+        if (currentSecond != displayedCurrentSecond) {
+            displayedCurrentSecond = currentSecond;
+            currentTimeString.set(formatSeconds(currentSecond));
+        }
+        long totalSecond = totalMillis / 1000;
+        if (totalSecond != displayedTotalSecond) {
+            displayedTotalSecond = totalSecond;
+            totalTimeString.set(formatSeconds(totalSecond));
         }
-        currentTimeString.set(formatDuration(Duration.ofSeconds((long) currentSeconds)));
-        totalTimeString.set(formatDuration(Duration.ofSeconds((long) totalSeconds)));
     }
 
-    private String formatDuration(Duration duration) {
-        long seconds = duration.getSeconds();
+    private String formatSeconds(long seconds) {
         long minutes = seconds / 60;
         long secs = seconds % 60;
-        return String.format("%02d:%02d", minutes, secs);
+        StringBuilder text = new StringBuilder(5);
+        if (minutes < 10) {
+            text.append('0');
+        }
+        text.append(minutes).append(':');
+        if (secs < 10) {
+            text.append('0');
+        }
+        return text.append(secs).toString();
     }
 
     // Playlist Management Methods
     public void createNewPlaylist(String name) {
+        if (deferWhileRestoring(() -> createNewPlaylist(name))) {
+            return;
+        }
         PlaylistEntity newPlaylist = playlistManager.createPlaylist(name);
+        recordChange(PlaylistChange.playlistCreated(newPlaylist));
         playlists.setAll(playlistManager.getAllPlaylists());
         switchToPlaylist(newPlaylist);
     }
 
     public void deletePlaylist(PlaylistEntity playlistToDelete) {
+        if (deferWhileRestoring(() -> withRestoredPlaylist(playlistToDelete, this::deletePlaylist))) {
+            return;
+        }
         if (playlistManager.deletePlaylist(playlistToDelete)) {
+            recordChange(PlaylistChange.playlistDeleted(playlistToDelete));
             playlists.setAll(playlistManager.getAllPlaylists());
             currentPlaylistEntity.set(playlistManager.getCurrentPlaylist());
         }
     }
 
     public void renamePlaylist(PlaylistEntity playlistToRename, String newName) {
+        if (deferWhileRestoring(() -> withRestoredPlaylist(playlistToRename, p -> renamePlaylist(p, newName)))) {
+            return;
+        }
         if (playlistManager.renamePlaylist(playlistToRename, newName)) {
+            recordChange(PlaylistChange.playlistRenamed(playlistToRename));
             playlists.setAll(playlistManager.getAllPlaylists());
         }
     }
 
     public void switchToPlaylist(PlaylistEntity playlistEntity) {
+        if (deferWhileRestoring(() -> withRestoredPlaylist(playlistEntity, this::switchToPlaylist))) {
+            return;
+        }
         currentPlaylistEntity.set(playlistEntity);
     }
 
+    // Journals the edit so the playlists survive a restart
+    private void recordChange(PlaylistChange change) {
+        // Swapping in the restored playlists is not an edit; user edits wait for it, see deferWhileRestoring
+        if (playlistsRestored) {
+            recordPlaylistChangeUseCase.execute(change, playlistManager);
+        }
+    }
+
     // Property getters
     public ObjectProperty<Song> currentSongProperty() {
         return currentSong;
@@ -369,7 +857,27 @@ public class MusicPlayerViewModel {
         return progress;
     }
 
+    public ObjectProperty<Waveform> waveformProperty() {
+        return waveform;
+    }
+
     public StringProperty searchTextProperty() {
         return searchText;
     }
+
+    public BooleanProperty isRestoringProperty() {
+        return isRestoring;
+    }
+
+    public BooleanProperty isLoadingProperty() {
+        return isLoading;
+    }
+
+    public DoubleProperty loadProgressProperty() {
+        return loadProgress;
+    }
+
+    public IntegerProperty loadedSongCountProperty() {
+        return loadedSongCount;
+    }
 }
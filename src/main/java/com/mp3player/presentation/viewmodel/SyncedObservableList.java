@@ -0,0 +1,209 @@
+package com.mp3player.presentation.viewmodel;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Observable list that can be brought in line with a new list of items as a
+ * minimal set of edits fired as a single change, instead of replacing every
+ * item with {@code setAll}. A ListView showing it only rebuilds the rows that
+ * actually changed and keeps its selection on the rest.
+ *
+ * <p>Items are expected to be unique, as songs in a playlist are. The edit
+ * script keeps the longest run of items that stay in the same order, which
+ * for unique items is the longest increasing run of their old positions, so
+ * it costs O(n log n) even when most of the list changes.
+ */
+public class SyncedObservableList<E> extends ModifiableObservableListBase<E> {
+    private final ArrayList<E> elements = new ArrayList<>();
+
+    /**
+     * Makes this list equal to {@code source}. Listeners get one change with
+     * the removed and added ranges, or nothing if the lists are already equal.
+     */
+    public void syncWith(List<? extends E> source) {
+        int oldSize = elements.size();
+        int newSize = source.size();
+
+        // Common head and tail are left alone; appending or trimming ends here
+        int limit = Math.min(oldSize, newSize);
+        int prefix = 0;
+        while (prefix < limit && Objects.equals(elements.get(prefix), source.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && Objects.equals(elements.get(oldSize - 1 - suffix), source.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        int oldEnd = oldSize - suffix;
+        int newEnd = newSize - suffix;
+        if (prefix == oldEnd && prefix == newEnd) {
+            return;
+        }
+
+        int[] anchors;
+        if (prefix == oldEnd || prefix == newEnd) {
+            anchors = new int[0]; // pure insert or pure removal
+        } else {
+            // Narrowing or widening a search only removes or only adds items
+            anchors = subsequencePositions(source, prefix, oldEnd, newEnd);
+            if (anchors == null) {
+                anchors = keptPositions(source, prefix, oldEnd, newEnd);
+            }
+        }
+
+        beginChange();
+        try {
+            int position = prefix;
+            int oldCursor = prefix;
+            int newCursor = prefix;
+            for (int i = 0; i <= anchors.length / 2; i++) {
+                boolean last = i == anchors.length / 2;
+                int oldAnchor = last ? oldEnd : anchors[2 * i];
+                int newAnchor = last ? newEnd : anchors[2 * i + 1];
+
+                if (oldAnchor > oldCursor) {
+                    nextRemove(position, new ArrayList<>(elements.subList(oldCursor, oldAnchor)));
+                }
+                int added = newAnchor - newCursor;
+                if (added > 0) {
+                    nextAdd(position, position + added);
+                    position += added;
+                }
+                position++;
+                oldCursor = oldAnchor + 1;
+                newCursor = newAnchor + 1;
+            }
+
+            // The change is reported against the final contents
+            elements.clear();
+            elements.addAll(source);
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Anchors when the shorter of the two middles is a subsequence of the
+     * longer one, found in one linear pass; null otherwise.
+     */
+    private int[] subsequencePositions(List<? extends E> source, int prefix, int oldEnd, int newEnd) {
+        boolean narrowing = newEnd - prefix <= oldEnd - prefix;
+        int shortEnd = narrowing ? newEnd : oldEnd;
+        int longEnd = narrowing ? oldEnd : newEnd;
+        int[] anchors = new int[2 * (shortEnd - prefix)];
+
+        int j = prefix;
+        for (int i = prefix; i < shortEnd; i++) {
+            Object item = narrowing ? source.get(i) : elements.get(i);
+            while (j < longEnd && !Objects.equals(item, narrowing ? elements.get(j) : source.get(j))) {
+                j++;
+            }
+            if (j == longEnd) {
+                return null;
+            }
+            anchors[2 * (i - prefix)] = narrowing ? j : i;
+            anchors[2 * (i - prefix) + 1] = narrowing ? i : j;
+            j++;
+        }
+        return anchors;
+    }
+
+    /**
+     * Pairs of (old position, new position) for the items between the common
+     * head and tail that stay in place, in order.
+     */
+    private int[] keptPositions(List<? extends E> source, int prefix, int oldEnd, int newEnd) {
+        Map<Object, Integer> oldPositions = new HashMap<>((int) ((oldEnd - prefix) / 0.75f) + 1);
+        for (int i = prefix; i < oldEnd; i++) {
+            oldPositions.put(elements.get(i), i);
+        }
+
+        // Longest increasing run of old positions, in the order of the new list
+        int count = newEnd - prefix;
+        int[] oldPosition = new int[count];
+        int[] tails = new int[count];       // index into oldPosition of the smallest tail per run length
+        int[] previous = new int[count];
+        int length = 0;
+        for (int n = 0; n < count; n++) {
+            Integer old = oldPositions.get(source.get(prefix + n));
+            oldPosition[n] = old != null ? old : -1;
+            if (old == null) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (oldPosition[tails[mid]] < old) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[n] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = n;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        int[] anchors = new int[2 * length];
+        for (int i = length - 1, n = length > 0 ? tails[length - 1] : -1; i >= 0; i--, n = previous[n]) {
+            anchors[2 * i] = oldPosition[n];
+            anchors[2 * i + 1] = prefix + n;
+        }
+        return anchors;
+    }
+
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    protected void doAdd(int index, E element) {
+        elements.add(index, element);
+    }
+
+    @Override
+    protected E doSet(int index, E element) {
+        return elements.set(index, element);
+    }
+
+    @Override
+    protected E doRemove(int index) {
+        return elements.remove(index);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        // One array copy instead of an insert per item
+        if (c.isEmpty()) {
+            return false;
+        }
+        int from = elements.size();
+        beginChange();
+        try {
+            elements.addAll(c);
+            modCount++;
+            nextAdd(from, elements.size());
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+}
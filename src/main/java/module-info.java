@@ -2,6 +2,8 @@ module com.mp3player {
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.media;
+    requires java.desktop;
+    requires java.xml;
 
     opens com.mp3player to javafx.fxml;
     opens com.mp3player.presentation.view to javafx.fxml;
@@ -10,7 +12,13 @@ module com.mp3player {
     exports com.mp3player.domain.entity;
     exports com.mp3player.domain.repository;
     exports com.mp3player.domain.usecase;
+    exports com.mp3player.data.audio;
+    exports com.mp3player.data.library;
+    exports com.mp3player.data.metadata;
+    exports com.mp3player.data.playlist;
     exports com.mp3player.data.repository;
     exports com.mp3player.presentation.view;
     exports com.mp3player.presentation.viewmodel;
+
+    uses com.mp3player.data.audio.AudioDecoder;
 }